@@ -2,12 +2,15 @@ package motionvdl;
 
 import javafx.application.Application;
 import javafx.stage.Stage;
+import motionvdl.controller.Controller;
 import motionvdl.controller.MainController;
 import motionvdl.display.Display;
+import motionvdl.model.data.Augmentation;
 import motionvdl.model.data.LabeledVideo;
 import motionvdl.model.data.Video;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * MotionVDL application starter 
@@ -18,7 +21,10 @@ public class MotionVDL extends Application {
 	/**
 	 * MotionVDL starter program
 	 * defines the program arguments
-	 * @param args [0] - Video location on filesystem, [1] - Debug setup flag
+	 * @param args [0] - Video location on filesystem, [1] - Debug setup flag,
+	 * --augment=count,maxAngle,maxShift,seed - Export that many seeded random augmented copies alongside the labelled data,
+	 * --synthetic=width,height,length,seed - Start with a seeded synthetic labelled video instead of a file, for load testing,
+	 * --decode=subsampled - Decode image files at reduced resolution when the crop is well above the target resolution
 	 */
 	public static void main(String[] args) {
 		launch(args);
@@ -27,17 +33,40 @@ public class MotionVDL extends Application {
 	@Override
 	public void start(Stage stage) {
 		
-		// need to use Parameters to get args[], and then save in List
-		List<String> args = getParameters().getRaw();
+		// need to use Parameters to get args[], and then save in List, options are given as --name=value
+		List<String> args = getParameters().getUnnamed();
+		Map<String, String> options = getParameters().getNamed();
 		
 		// setup debug
 		Debug.setup(true);
 		
+		// setup image decoding
+		if (options.containsKey("decode")) Controller.setSubsampledDecode(options.get("decode").equals("subsampled"));
+		
+		// setup augmented export
+		if (options.containsKey("augment")) {
+			try {
+				String[] values = options.get("augment").split(",");
+				Controller.setAugmentations(Augmentation.random(Integer.parseInt(values[0]), Double.parseDouble(values[1]), Double.parseDouble(values[2]), Long.parseLong(values[3])));
+			} catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+				Debug.trace("MotionVDL: ignored malformed option --augment, expected count,maxAngle,maxShift,seed");
+			}
+		}
+		
 		// initialise main controller with display
 		MainController controller = new MainController(new Display(stage));
 		
-		// start with file if given
-		if (args.size() > 0) controller.open(args.get(0));
+		// start with synthetic data or file if given
+		if (options.containsKey("synthetic")) {
+			try {
+				String[] values = options.get("synthetic").split(",");
+				controller.pass(LabeledVideo.synthetic(Integer.parseInt(values[0]), Integer.parseInt(values[1]), Integer.parseInt(values[2]), Long.parseLong(values[3])));
+			} catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+				Debug.trace("MotionVDL: ignored malformed option --synthetic, expected width,height,length,seed");
+			}
+		} else if (args.size() > 0) {
+			controller.open(args.get(0));
+		}
 		
 		// bypass open method to load encoded data into initial controller state
 		//controller.pass(new LabeledVideo(Video.noise(100, 100, 10)));
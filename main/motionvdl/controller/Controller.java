@@ -1,8 +1,14 @@
 package motionvdl.controller;
 
+import java.io.IOException;
+
 import motionvdl.Debug;
 import motionvdl.display.Display;
+import motionvdl.model.data.Augmentation;
+import motionvdl.model.data.FrameIndex;
 import motionvdl.model.data.LabeledVideo;
+import motionvdl.model.data.Resampler;
+import motionvdl.model.data.SegmentedLabeledVideo;
 
 /**
  * MotionVDL controller superclass
@@ -14,6 +20,19 @@ public abstract class Controller {
 	protected String displayTitle = "MotionVDL";        // title on display
 	protected String debugTitle = "[controller]";       // title in debug trace
 	protected static String outputFile = "output.mvdl"; // filesystem location for exported data
+	
+	// pyramid export
+	protected static int[] pyramidTargets = new int[0];                  // smaller resolutions exported alongside the data
+	protected static Resampler.Filter pyramidFilter = Resampler.Filter.AREA; // filter used to derive the smaller resolutions
+	
+	// image decoding
+	protected static boolean subsampledDecode = false; // decode image files at reduced resolution when well above the target resolution
+	
+	// augmented export
+	protected static Augmentation[] augmentations = new Augmentation[0]; // augmented copies exported alongside the data
+	
+	// duplicate collapse
+	protected static FrameIndex sourceIndex = null; // source frame of each frame when duplicate frames were collapsed on opening
 
 	// components
 	protected Controller linkedController; // pointer to the linked controller
@@ -95,6 +114,126 @@ public abstract class Controller {
 	}
 	
 	
+	/**
+	 * Export data to filesystem location, segmented when the location has the mvds
+	 * extension or the data exceeds the value limits of the mvdl encoding. When duplicate
+	 * frames were collapsed the frame index is written alongside with the index extension,
+	 * so labels can be expanded back to the source frames. Pixel statistics gathered while
+	 * encoding are written alongside with the stats extension. Both sit next to the data
+	 * file actually written
+	 * @param temp Labelled video data
+	 * @param location Filesystem location
+	 * @throws IOException Problem accessing filesystem
+	 */
+	protected static void export(LabeledVideo temp, String location) throws IOException {
+		
+		// resolve data file location, switching to the mvds extension when segmented
+		boolean segmented = location.endsWith(".mvds") || !temp.checkEncodable();
+		String target = (segmented && !location.endsWith(".mvds")) ? location.replaceFirst("\\.mvdl$", "")+".mvds" : location;
+		
+		// export segmented data
+		if (segmented) {
+			Debug.trace(String.format("Exporting segmented data to '%s'",target));
+			SegmentedLabeledVideo segmentedData = new SegmentedLabeledVideo(temp);
+			segmentedData.export(target);
+			segmentedData.getStatistics().export(target+".stats");
+		
+		// otherwise export single encoding
+		} else {
+			temp.export(target);
+			temp.video.getStatistics().export(target+".stats");
+		}
+		
+		// export the source frame of each frame
+		if (sourceIndex != null && sourceIndex.length == temp.video.length) {
+			Debug.trace(String.format("Exporting frame index to '%s.index'",target));
+			sourceIndex.export(target+".index");
+		}
+	}
+	
+	
+	/**
+	 * Export the data at each pyramid resolution in a single pass, deriving each resolution from
+	 * the one before it. Every resolution shares the data label and is written next to the given
+	 * location with the resolution appended to the file name
+	 * @param temp Labelled video data
+	 * @param location Filesystem location of the full resolution data
+	 * @throws IOException Problem accessing filesystem
+	 */
+	protected static void exportPyramid(LabeledVideo temp, String location) throws IOException {
+		
+		// skip when no pyramid resolutions are set
+		if (pyramidTargets.length == 0) return;
+		
+		// scale data to every resolution
+		LabeledVideo[] levels = temp.getPyramid(pyramidTargets, pyramidFilter);
+		
+		// export and release each resolution
+		int dot = location.lastIndexOf('.');
+		for (int k=0; k < levels.length; k++) {
+			String levelLocation = (dot > 0) ? location.substring(0, dot)+"_"+pyramidTargets[k]+location.substring(dot) : location+"_"+pyramidTargets[k];
+			Debug.trace(String.format("Exporting %dx%d data to '%s'",pyramidTargets[k],pyramidTargets[k],levelLocation));
+			export(levels[k], levelLocation);
+			levels[k].release();
+		}
+	}
+	
+	
+	/**
+	 * Set whether image files are decoded at reduced resolution when the crop is well above
+	 * the target resolution, off by default as the output then differs slightly from a full decode
+	 * @param subsampled Decode at reduced resolution
+	 */
+	public static void setSubsampledDecode(boolean subsampled) {
+		subsampledDecode = subsampled;
+		Debug.trace(String.format("Controller: subsampled decode %s",subsampled ? "on" : "off"));
+	}
+	
+	
+	/**
+	 * Set the augmentations exported alongside labelled data, none by default
+	 * @param augmentations Augmentations
+	 */
+	public static void setAugmentations(Augmentation[] augmentations) {
+		Controller.augmentations = augmentations;
+		Debug.trace(String.format("Controller: %d augmentations set",augmentations.length));
+	}
+	
+	
+	/**
+	 * Export an augmented copy of the data for each augmentation, each written like the data
+	 * itself next to the given location with the augmentation index appended to the file name.
+	 * Copies are transformed while they are written, so no augmented frames are held in memory.
+	 * Augmentations that move a label point outside the frame are skipped rather than writing
+	 * wrong positions, and the skipped indices are traced
+	 * @param temp Labelled video data
+	 * @param location Filesystem location of the data
+	 * @return Number of augmentations skipped
+	 * @throws IOException Problem accessing filesystem
+	 */
+	protected static int exportAugmented(LabeledVideo temp, String location) throws IOException {
+		
+		// export each augmentation that keeps every label point in frame
+		int skipped = 0;
+		int dot = location.lastIndexOf('.');
+		for (int i=0; i < augmentations.length; i++) {
+			if (!augmentations[i].fits(temp.label, temp.video.width, temp.video.height)) {
+				Debug.trace(String.format("Skipped augmentation %d %s: label points leave the frame",i,augmentations[i]));
+				skipped++;
+				continue;
+			}
+			String augmentedLocation = (dot > 0) ? location.substring(0, dot)+"_aug"+i+location.substring(dot) : location+"_aug"+i;
+			Debug.trace(String.format("Exporting augmentation %d %s to '%s'",i,augmentations[i],augmentedLocation));
+			export(augmentations[i].apply(temp), augmentedLocation);
+		}
+		
+		// debug trace
+		if (skipped > 0) Debug.trace(String.format("Skipped %d of %d augmentations",skipped,augmentations.length));
+		
+		return skipped;
+	}
+	
+	
 	/**
 	 * Set the current video frame
 	 * @param index Index of video frame
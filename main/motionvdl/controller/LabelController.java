@@ -161,8 +161,10 @@ public class LabelController extends Controller {
 
 		try {
 			
-			// export data
-			data.export(outputFile);
+			// export data, any smaller pyramid resolutions and any augmented copies
+			export(data, outputFile);
+			exportPyramid(data, outputFile);
+			exportAugmented(data, outputFile);
 			
 			// close display
 			display.exit();
@@ -1,10 +1,17 @@
 package motionvdl.controller;
 
+import java.io.File;
+
 import motionvdl.Debug;
 import motionvdl.display.Display;
 import motionvdl.model.FileSystem;
+import motionvdl.model.data.FrameIndex;
 import motionvdl.model.data.LabeledVideo;
+import motionvdl.model.data.LazyFrameStore;
+import motionvdl.model.data.SegmentedLabeledVideo;
+import motionvdl.model.data.StreamingFrameStore;
 import motionvdl.model.data.Video;
+import motionvdl.model.data.Y4MFrameStore;
 
 /**
  * MotionVDL main controller
@@ -12,6 +19,18 @@ import motionvdl.model.data.Video;
  */
 public class MainController extends Controller {
 
+	// constants
+	private static final int FRAME_CACHE_SHARE = 8; // share of the maximum heap held as decoded frames when opening an image directory, lazily or streaming
+
+	/**
+	 * Ways of reading the frames of an image directory
+	 */
+	public enum Ingest {
+		LAZY,         // decode frames on demand through a bounded cache
+		STREAMING,    // decode frames ahead of the frame being read in the background, within a bounded window
+		DEDUPLICATED  // decode frames on demand, collapsing runs of near duplicate frames
+	}
+
 	// subcontrollers
 	private Controller[] subcontroller; // stage controllers
 	private int controllerIndex;        // index of current subcontroller
@@ -47,31 +66,78 @@ public class MainController extends Controller {
 	 * @param location Filesystem location
 	 */
 	public void open(String location) {
+		open(location, Ingest.LAZY);
+	}
+	
+	
+	/**
+	 * Pass video loaded from file system location to relevant subcontroller, reading the
+	 * frames of an image directory in the given way
+	 * @param location Filesystem location
+	 * @param ingest Way of reading the frames of an image directory
+	 */
+	public void open(String location, Ingest ingest) {
 		
 		// debug trace
 		Debug.trace(String.format("%s open ->", debugTitle));
 		
+		// release the data being replaced
+		if (controllerIndex > -1 && linkedController.data != null) {
+			linkedController.data.release();
+			linkedController.data = null;
+		}
+		sourceIndex = null;
+		pyramidTargets = new int[0];
+		
 		try {
 			
 			// get file extension
 			String[] pattern = location.split("\\.");
 			String extension = (pattern.length > 0) ? pattern[pattern.length-1] : "";
 			
-			// decode mvdl files
+			// map mvdl files
 			if (extension.equals("mvdl")) {
 				
 				// pass to label controller
 				controllerIndex = 1;
 				linkedController = subcontroller[controllerIndex];
-				linkedController.pass(new LabeledVideo(FileSystem.readBytes(location)));
+				linkedController.pass(new LabeledVideo(location));
+			
+			// join segments of mvds files
+			} else if (extension.equals("mvds")) {
+				
+				// pass to label controller
+				controllerIndex = 1;
+				linkedController = subcontroller[controllerIndex];
+				linkedController.pass(new SegmentedLabeledVideo(location).getJoined());
+			
+			// read y4m files frame by frame
+			} else if (extension.equals("y4m")) {
+				
+				// pass to video controller
+				controllerIndex = 0;
+				linkedController = subcontroller[controllerIndex];
+				linkedController.pass(new LabeledVideo(new Video(new Y4MFrameStore(location))));
 			
 			// otherwise open as image directory
 			} else {
 				
+				// stream frames in the background or decode them on demand
+				File[] files = FileSystem.listImages(location);
+				Video video = new Video((ingest == Ingest.STREAMING)
+					? new StreamingFrameStore(files, Runtime.getRuntime().maxMemory() / FRAME_CACHE_SHARE)
+					: new LazyFrameStore(files, Runtime.getRuntime().maxMemory() / FRAME_CACHE_SHARE));
+				
+				// collapse near duplicate frames
+				if (ingest == Ingest.DEDUPLICATED) {
+					sourceIndex = FrameIndex.getDeduplicated(video, FrameIndex.DUPLICATE_DISTANCE);
+					video = sourceIndex.getSelected(video);
+				}
+				
 				// pass to video controller
 				controllerIndex = 0;
 				linkedController = subcontroller[controllerIndex];
-				linkedController.pass(new LabeledVideo(new Video(FileSystem.readImages(location))));
+				linkedController.pass(new LabeledVideo(video));
 			}
 			
 		// trace error and pass noise to video controller
@@ -104,7 +170,7 @@ public class MainController extends Controller {
 		
 		// export data
 		try {
-			if (controllerIndex > -1) linkedController.data.export(location);
+			if (controllerIndex > -1) export(linkedController.data, location);
 		} catch (Exception e) {
 			e.printStackTrace();
 			Debug.trace(e.getMessage());
@@ -1,7 +1,13 @@
 package motionvdl.controller;
 
+import java.io.IOException;
+import java.util.Arrays;
+
 import motionvdl.Debug;
 import motionvdl.model.data.LabeledVideo;
+import motionvdl.model.data.MotionEnvelope;
+import motionvdl.model.data.Resampler;
+import motionvdl.model.data.Video;
 
 /**
  * MotionVDL video subcontroller
@@ -9,6 +15,9 @@ import motionvdl.model.data.LabeledVideo;
  */
 public class VideoController extends Controller {
 	
+	// constants
+	private static final int SUGGESTION_FRAMES = 16; // frames sampled to suggest the crop frame
+	
 	/**
 	 * Construct crop controller
 	 * @param mc Pointer to main controller
@@ -29,12 +38,21 @@ public class VideoController extends Controller {
 	
 	
 	/**
-	 * Default pass behaviour then setup display
+	 * Default pass behaviour then setup display with a suggested crop
 	 * @param temp Reference to the labeled video
 	 */
 	public void pass(LabeledVideo temp) {
 		super.pass(temp);
 		display.alterForPreprocessing();
+		
+		// pre-position the crop frame around the motion in a few frames spread over those loaded so far,
+		// bounding the frames decoded on the display thread however long the video is
+		try {
+			int[] crop = MotionEnvelope.suggestCrop(data.video.getRange(0, data.video.getLoaded()), SUGGESTION_FRAMES);
+			display.setViewPort(crop[0], crop[1], crop[2]);
+		} catch (RuntimeException e) {
+			Debug.trace(debugTitle+" no crop suggestion: "+e.getMessage());
+		}
 	}
 	
 	
@@ -47,26 +65,81 @@ public class VideoController extends Controller {
 		// debug trace
 		Debug.trace(debugTitle + " received next");
 		
-		// get target res and scale crop frame
-		int targetRes = display.getTarget();
+		// get target resolutions, scaling filter and scale crop frame
+		int[] targets;
+		try {
+			targets = display.getTargets();
+		} catch (NumberFormatException e) {
+			targets = new int[] {0};
+		}
+		int targetRes = targets[0];
+		Resampler.Filter filter = display.getFilter();
 		int[] cfd = display.getCropFrame();
 		int cropX = cfd[0];
 		int cropY = cfd[1];
 		int cropRes = cfd[2];
 		
-		// proceed if crop frame and target resolution are valid
+		// get frame selection, defaulting to every frame
+		int start = 0;
+		int end = data.video.length;
+		int stride = 1;
+		try {
+			int[] frames = display.getFrames();
+			start = frames[0];
+			end = (frames[1] < 0) ? data.video.length : frames[1];
+			stride = frames[2];
+		} catch (NumberFormatException e) {
+			start = -1;
+		}
+		
+		// proceed if crop frame, target resolution and frame selection are valid
 		boolean validTR = (0 < targetRes && targetRes <= cropRes);
-		if (validTR) {
+		for (int k=1; k < targets.length; k++) {
+			validTR &= (0 < targets[k] && targets[k] < targets[k-1]);
+		}
+		boolean validFS = (0 <= start && start < end && end <= data.video.length && 0 < stride);
+		if (validTR && validFS) {
+			
+			// decode only the crop frame of image files, skipping pixels well above the target resolution when enabled,
+			// mapping the label into the crop frame with it
+			LabeledVideo source = data;
+			int decodedX = cropX, decodedY = cropY, decodedRes = cropRes;
+			try {
+				int step = subsampledDecode ? Video.getDecodeStep(cropRes, targetRes) : 1;
+				Video decoded = data.video.getDecoded(cropX, cropY, cropRes, cropRes, step);
+				if (decoded != null) {
+					source = new LabeledVideo(decoded, data.label.getCropped(cropX, cropY, cropRes, data.video.width, data.video.height));
+					decodedX = 0;
+					decodedY = 0;
+					decodedRes = decoded.width;
+				}
+			} catch (IOException e) {
+				Debug.trace(debugTitle+" decoding whole frames: "+e.getMessage());
+			}
+			
+			// select, crop, scale and color video keeping any label, such as synthetic ground truth, releasing the source video
+			LabeledVideo processed = source.getTrimmed(start, end, stride).getProcessed(decodedX, decodedY, decodedRes, targetRes, filter);
+			if (source != data) source.release();
+			data.release();
+			data = processed;
+			if (sourceIndex != null) sourceIndex = sourceIndex.getTrimmed(start, end, stride);
 			
-			// crop scale and color video
-			data = data.getProcessed(cropX, cropY, cropRes, targetRes);
+			// export the remaining resolutions alongside the labelled data
+			pyramidTargets = Arrays.copyOfRange(targets, 1, targets.length);
+			pyramidFilter = filter;
 			
 			// next stage
 			super.complete();
 		
 		// skip and warn invalid target resolution
+		} else if (!validTR) {
+			String message = String.format("Invalid target resolution [targetRes=%s, cropRes=%d]", Arrays.toString(targets), cropRes);
+			Debug.trace(debugTitle+" ignored next: "+message);
+			display.sendAlert(message);
+		
+		// skip and warn invalid frame selection
 		} else {
-			String message = String.format("Invalid target resolution [targetRes=%d, cropRes=%d]", targetRes, cropRes);
+			String message = String.format("Invalid frame selection [frames=%d, selection=%d:%d:%d]", data.video.length, start, end, stride);
 			Debug.trace(debugTitle+" ignored next: "+message);
 			display.sendAlert(message);
 		}
@@ -4,7 +4,6 @@ import java.awt.image.BufferedImage;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
 import java.util.function.BiConsumer;
 
 import javafx.embed.swing.SwingFXUtils;
@@ -26,6 +25,7 @@ import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import motionvdl.controller.MainController;
 import motionvdl.model.data.Point;
+import motionvdl.model.data.Resampler;
 
 /**
  * MotionVDL display component
@@ -48,6 +48,8 @@ public class Display {
 	private final Label nextNodeLab;
 	private final Label dynamicNodeLab;
 	private final Label targetResLab;
+	private final Label filterLab;
+	private final Label framesLab;
 	private final Label titleLab;
 	private final Line nodeLabSeparator;
 	private final List<Circle> points;
@@ -58,6 +60,8 @@ public class Display {
 	private final Slider sliderY;
 	private final Slider sliderZoom;
 	private final TextField resTextField;
+	private final ChoiceBox<Resampler.Filter> filterChoice;
+	private final TextField framesTextField;
 
 	/**
 	 * Display constructor.
@@ -231,30 +235,81 @@ public class Display {
 		this.resTextField.setLayoutY(270);
 		this.resTextField.setMinSize(5, 5);
 		this.resTextField.setMaxWidth(70);
+		this.resTextField.setTooltip(
+				new Tooltip("Target res, or comma separated resolutions\n" +
+						"largest first to also export smaller copies.")
+		);
 		this.resTextField.textProperty().addListener((observable, oldValue, newValue) -> {
-			// Check content of TextField is digits only, if not, disallow given input
-			if (!newValue.matches("\\d*")) {
-				this.resTextField.setText(newValue.replaceAll("\\D", ""));
+			// Check content of TextField is digits and commas only, if not, disallow given input
+			if (!newValue.matches("[\\d,]*")) {
+				this.resTextField.setText(newValue.replaceAll("[^\\d,]", ""));
 			}
 			// Make sure min res in TextField is kept in sync with crop frame
-			if (!Objects.equals(this.resTextField.getText(), "") && getTarget() > this.sliderZoom.getValue() * this.widthScaleFactor) {
+			if (this.resTextField.getText().matches("\\d+.*") && getTarget() > this.sliderZoom.getValue() * this.widthScaleFactor) {
 				this.resTextField.setText(Integer.toString((int) (this.sliderZoom.getValue() * this.widthScaleFactor)));
 			}
 		});
 		this.primaryPane.getChildren().add(this.resTextField);
 
+		// Label to tell user what filterChoice is for
+		this.filterLab = new Label("Filter:");
+		this.filterLab.setId("targetResLabID");
+		this.filterLab.setLayoutX(483);
+		this.filterLab.setLayoutY(310);
+		this.primaryPane.getChildren().add(this.filterLab);
+
+		// ChoiceBox for selecting the scaling filter
+		this.filterChoice = new ChoiceBox<>();
+		this.filterChoice.setId("choiceBoxID");
+		this.filterChoice.setLayoutX(565);
+		this.filterChoice.setLayoutY(305);
+		this.filterChoice.setMaxWidth(70);
+		this.filterChoice.getItems().addAll(Resampler.Filter.values());
+		this.filterChoice.setValue(Resampler.Filter.AREA);
+		this.filterChoice.setTooltip(
+				new Tooltip("Filter used to scale to target res.")
+		);
+		this.primaryPane.getChildren().add(this.filterChoice);
+
+		// Label to tell user what framesTextField is for
+		this.framesLab = new Label("Frames:");
+		this.framesLab.setId("targetResLabID");
+		this.framesLab.setLayoutX(483);
+		this.framesLab.setLayoutY(345);
+		this.primaryPane.getChildren().add(this.framesLab);
+
+		// TextField for selecting the frames to process as start:end:step
+		this.framesTextField = new TextField();
+		this.framesTextField.setId("textFieldID");
+		this.framesTextField.setLayoutX(565);
+		this.framesTextField.setLayoutY(340);
+		this.framesTextField.setMinSize(5, 5);
+		this.framesTextField.setMaxWidth(70);
+		this.framesTextField.setPromptText("start:end:step");
+		this.framesTextField.setTooltip(
+				new Tooltip("Frames to process as start:end:step.\n" +
+						"Leave empty to process every frame.")
+		);
+		this.framesTextField.textProperty().addListener((observable, oldValue, newValue) -> {
+			// Check content of TextField is digits and colons only, if not, disallow given input
+			if (!newValue.matches("[\\d:]*")) {
+				this.framesTextField.setText(newValue.replaceAll("[^\\d:]", ""));
+			}
+		});
+		this.primaryPane.getChildren().add(this.framesTextField);
+
 		// Label for displaying text above next node Label
 		this.nextNodeLab = new Label();
 		this.nextNodeLab.setId("messageLabID");
 		HBox hBoxNextNodeLab = new HBox(this.nextNodeLab); // HBox used for centering text
 		hBoxNextNodeLab.setAlignment(Pos.CENTER);
 		hBoxNextNodeLab.setLayoutX(480);
-		hBoxNextNodeLab.setLayoutY(340);
+		hBoxNextNodeLab.setLayoutY(375);
 		hBoxNextNodeLab.setPrefWidth(160);
 		this.primaryPane.getChildren().add(hBoxNextNodeLab);
 
 		// Line to separate nextNodeLab and dynamicNodeLab
-		this.nodeLabSeparator = new Line(480, 365, 640, 365);
+		this.nodeLabSeparator = new Line(480, 400, 640, 400);
 
 		// Label for displaying next node placement
 		this.dynamicNodeLab = new Label();
@@ -262,7 +317,7 @@ public class Display {
 		HBox hBoxDynamicNodeLab = new HBox(this.dynamicNodeLab); // HBox used for centering text
 		hBoxDynamicNodeLab.setAlignment(Pos.CENTER);
 		hBoxDynamicNodeLab.setLayoutX(480);
-		hBoxDynamicNodeLab.setLayoutY(370);
+		hBoxDynamicNodeLab.setLayoutY(405);
 		hBoxDynamicNodeLab.setPrefWidth(160);
 		this.primaryPane.getChildren().add(hBoxDynamicNodeLab);
 
@@ -279,6 +334,24 @@ public class Display {
 				this.receiver.open(selectedDirectory.getPath());
 			}
 		});
+		MenuItem openFolderDeduplicated = new MenuItem("Open folder, collapsing duplicate frames");
+		openFolderDeduplicated.setOnAction(event -> {
+			DirectoryChooser directoryChooser = new DirectoryChooser();
+			directoryChooser.setInitialDirectory(new File("."));
+			File selectedDirectory = directoryChooser.showDialog(primaryStage);
+			if (selectedDirectory != null) {
+				this.receiver.open(selectedDirectory.getPath(), MainController.Ingest.DEDUPLICATED);
+			}
+		});
+		MenuItem openFolderStreaming = new MenuItem("Open folder, streaming frames");
+		openFolderStreaming.setOnAction(event -> {
+			DirectoryChooser directoryChooser = new DirectoryChooser();
+			directoryChooser.setInitialDirectory(new File("."));
+			File selectedDirectory = directoryChooser.showDialog(primaryStage);
+			if (selectedDirectory != null) {
+				this.receiver.open(selectedDirectory.getPath(), MainController.Ingest.STREAMING);
+			}
+		});
 		MenuItem openFile = new MenuItem("Open file");
 		openFile.setOnAction(event -> {
 			// Show user their file system to allow file choice
@@ -301,7 +374,7 @@ public class Display {
 				this.receiver.saveAs(fileChoice.getPath());
 			}
 		});
-		fileMenu.getItems().addAll(openFolder, openFile, save, saveAs);
+		fileMenu.getItems().addAll(openFolder, openFolderStreaming, openFolderDeduplicated, openFile, save, saveAs);
 		this.menuBar.getMenus().add(fileMenu);
 		this.menuBar.setMinWidth(this.WIDTH);
 		this.primaryPane.getChildren().add(this.menuBar);
@@ -465,6 +538,22 @@ public class Display {
 		this.resTextField.setText(Integer.toString((int) (this.sliderZoom.getValue() * this.widthScaleFactor)));
 	}
 
+	/**
+	 * Sets the initial ViewPort to a square crop of the frame, such as a suggested crop.
+	 * @param x Top left x co-ordinate of the crop in frame pixels
+	 * @param y Top left y co-ordinate of the crop in frame pixels
+	 * @param size Width and height of the crop in frame pixels
+	 */
+	public void setViewPort(int x, int y, int size) {
+		// Start from the default ViewPort so slider ranges match the Image
+		setViewPort();
+
+		// Set zoom first as it updates the ranges of the horizontal and vertical sliders
+		this.sliderZoom.setValue(size / this.widthScaleFactor);
+		this.sliderX.setValue(x / this.widthScaleFactor);
+		this.sliderY.setValue(y / this.heightScaleFactor);
+	}
+
 	/**
 	 * Changes the current state of the ViewPort based on a Slider's movement.
 	 * @param slider Which slider's value has changed
@@ -494,7 +583,7 @@ public class Display {
 				this.sliderY.setMax(this.imageView.getImage().getHeight() - this.imageView.getViewport().getHeight());
 
 				// Adjust content of TextField accordingly to reflect zoom level change
-				if (!this.resTextField.getText().equals("")) {
+				if (this.resTextField.getText().matches("\\d+.*")) {
 					if (!getRadio() || getTarget() >= this.sliderZoom.getValue() * this.widthScaleFactor) {
 						this.resTextField.setText(Integer.toString((int) (this.sliderZoom.getValue() * this.widthScaleFactor)));
 					}
@@ -600,6 +689,9 @@ public class Display {
 		);
 		this.radioBut.setSelected(false);
 		this.resTextField.setEditable(true);
+		this.filterChoice.setDisable(false);
+		this.framesTextField.setText("");
+		this.framesTextField.setEditable(true);
 		this.primaryPane.requestFocus();
 	}
 
@@ -618,15 +710,55 @@ public class Display {
 		);
 		this.radioBut.setSelected(false);
 		this.resTextField.setEditable(false);
+		this.filterChoice.setDisable(true);
+		this.framesTextField.setEditable(false);
 		this.primaryPane.requestFocus();
 	}
 
 	/**
 	 * Process a user's input for target resolution.
-	 * @return An int specifying the target resolution
+	 * @return An int specifying the target resolution, the first when several are given
 	 */
 	public int getTarget() {
-		return Integer.parseInt(this.resTextField.getText());
+		return Integer.parseInt(this.resTextField.getText().split(",", -1)[0]);
+	}
+
+	/**
+	 * Process a user's input for target resolutions, given as a comma separated list.
+	 * @return An int array of the target resolutions in the order given
+	 * @throws NumberFormatException An empty or too large resolution
+	 */
+	public int[] getTargets() throws NumberFormatException {
+		String[] parts = this.resTextField.getText().split(",", -1);
+		int[] targets = new int[parts.length];
+		for (int i = 0; i < parts.length; i++) {
+			targets[i] = Integer.parseInt(parts[i]);
+		}
+		return targets;
+	}
+
+	/**
+	 * Get the user's choice of scaling filter.
+	 * @return The selected resampling filter
+	 */
+	public Resampler.Filter getFilter() {
+		return this.filterChoice.getValue();
+	}
+
+	/**
+	 * Process a user's input for the frames to process, given as start:end:step
+	 * where any part may be left empty.
+	 * @return An int array of start, end and step, with end -1 when not specified
+	 * @throws NumberFormatException More than three parts or a number too large
+	 */
+	public int[] getFrames() throws NumberFormatException {
+		String[] parts = this.framesTextField.getText().split(":", -1);
+		if (parts.length > 3) throw new NumberFormatException("Too many parts in frame selection");
+		int[] frames = new int[] {0, -1, 1};
+		for (int i = 0; i < parts.length; i++) {
+			if (!parts[i].isEmpty()) frames[i] = Integer.parseInt(parts[i]);
+		}
+		return frames;
 	}
 
 	/**
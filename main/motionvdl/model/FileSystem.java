@@ -1,14 +1,26 @@
 package motionvdl.model;
 
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.Iterator;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 
 import motionvdl.Debug;
 import motionvdl.model.data.Encoding;
@@ -20,7 +32,8 @@ public final class FileSystem {
 	
 	
 	/**
-	 * Write encoded instance to filesystem location
+	 * Write encoded instance to filesystem location. The file is overwritten in place and only
+	 * truncated when the encoding is shorter, so a file that is currently memory mapped can be saved over
 	 * @param encoding The FileSystem object
 	 * @param location The filesystem location
 	 * @throws IOException Problem accessing filesystem
@@ -30,11 +43,42 @@ public final class FileSystem {
 		// debug trace
 		Debug.trace(String.format("FileSystem: write bytes '%s'",location));
 		
-		try {
+		try (FileChannel output = FileChannel.open(Path.of(location), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			
+			// write bytes from the start of the file
+			ByteBuffer buffer = ByteBuffer.wrap(encoding);
+			while (buffer.hasRemaining()) output.write(buffer);
 			
-			FileOutputStream output = new FileOutputStream(location);
-			output.write(encoding);
-			output.close();
+			// remove any trailing bytes of a longer previous file
+			if (output.size() > encoding.length) output.truncate(encoding.length);
+			
+		} catch (Exception e) {
+			throw new IOException("FileSystem error: "+e.getMessage());
+		}
+	}
+	
+	
+	/**
+	 * Stream encoded instance to filesystem location, without holding the whole byte sequence
+	 * in memory. Like writeBytes the file is overwritten in place and only truncated when shorter
+	 * @param encoding The encoded instance
+	 * @param location The filesystem location
+	 * @throws IOException Problem accessing filesystem
+	 */
+	public static void writeEncoding(Encoding encoding, String location) throws IOException {
+		
+		// debug trace
+		Debug.trace(String.format("FileSystem: write encoding '%s'",location));
+		
+		try (FileChannel output = FileChannel.open(Path.of(location), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			
+			// stream encoding from the start of the file
+			BufferedOutputStream stream = new BufferedOutputStream(Channels.newOutputStream(output), 1 << 16);
+			encoding.write(stream);
+			stream.flush();
+			
+			// remove any trailing bytes of a longer previous file
+			if (output.size() > output.position()) output.truncate(output.position());
 			
 		} catch (Exception e) {
 			throw new IOException("FileSystem error: "+e.getMessage());
@@ -74,15 +118,107 @@ public final class FileSystem {
 	
 	
 	/**
-	 * Load images from directory on filesystem
+	 * Read byte range from filesystem location
+	 * @param location File system location
+	 * @param offset Position of the first byte
+	 * @param size Number of bytes
+	 * @return Byte sequence
+	 * @throws IOException Problem accessing filesystem or range exceeds the file
+	 */
+	public static byte[] readBytes(String location, long offset, int size) throws IOException {
+		
+		// debug trace
+		Debug.trace(String.format("FileSystem: read %d bytes from %d '%s'",size,offset,location));
+		
+		try (FileChannel input = FileChannel.open(Path.of(location), StandardOpenOption.READ)) {
+			
+			// read bytes
+			ByteBuffer buffer = ByteBuffer.allocate(size);
+			while (buffer.hasRemaining()) {
+				if (input.read(buffer, offset+buffer.position()) < 0) throw new IOException("unexpected end of file");
+			}
+			
+			// return byte sequence
+			return buffer.array();
+			
+		} catch (Exception e) {
+			throw new IOException("FileSystem error: "+e.getMessage());
+		}
+	}
+	
+	
+	/**
+	 * Memory map byte range from filesystem location as read only
+	 * @param location File system location
+	 * @param offset Position of the first byte
+	 * @param size Number of bytes, at most Integer.MAX_VALUE
+	 * @return Mapped byte buffer, which stays valid after the file is closed
+	 * @throws IOException Problem accessing filesystem or range exceeds the file
+	 */
+	public static MappedByteBuffer mapBytes(String location, long offset, long size) throws IOException {
+		
+		try (FileChannel input = FileChannel.open(Path.of(location), StandardOpenOption.READ)) {
+			
+			// throw ranges beyond the end of the file
+			if (offset+size > input.size()) throw new IOException("unexpected end of file");
+			
+			// map bytes
+			return input.map(FileChannel.MapMode.READ_ONLY, offset, size);
+			
+		} catch (Exception e) {
+			throw new IOException("FileSystem error: "+e.getMessage());
+		}
+	}
+	
+	
+	/**
+	 * Open a new scratch file for reading and writing, deleted when closed
+	 * @param directory Filesystem directory location of the scratch file
+	 * @return File channel
+	 * @throws IOException Problem accessing filesystem
+	 */
+	public static FileChannel openScratch(String directory) throws IOException {
+		
+		try {
+			
+			// create uniquely named file
+			Path path = Files.createTempFile(Path.of(directory), "mvdl", ".scratch");
+			
+			// debug trace
+			Debug.trace(String.format("FileSystem: open scratch '%s'",path));
+			
+			// open channel that deletes the file when closed
+			return FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+			
+		} catch (Exception e) {
+			throw new IOException("FileSystem error: "+e.getMessage());
+		}
+	}
+	
+	
+	/**
+	 * Get size of file at filesystem location
+	 * @param location File system location
+	 * @return Number of bytes
+	 * @throws IOException Problem accessing filesystem
+	 */
+	public static long getSize(String location) throws IOException {
+		File file = new File(location);
+		if (!file.isFile()) throw new IOException(String.format("FileSystem error: not a file '%s'",location));
+		return file.length();
+	}
+	
+	
+	/**
+	 * List image files in directory on filesystem in numeric order
 	 * @param location Filesystem directory location
-	 * @return BufferedImage array
+	 * @return File array
 	 * @throws IOException Problem accessing filesystem
 	 */
-	public static BufferedImage[] readImages(String location) throws IOException {
+	public static File[] listImages(String location) throws IOException {
 		
 		// debug trace
-		Debug.trace(String.format("FileSystem: read images '%s'",location));
+		Debug.trace(String.format("FileSystem: list images '%s'",location));
 		
 		// check if the path is a directory
 		File directory = new File(location);
@@ -104,17 +240,77 @@ public final class FileSystem {
 			// debug trace
 			Debug.trace(String.format("FileSystem: found %d files",files.length));
 			
-			// read each file into BufferedImage array
-			BufferedImage[] frames = new BufferedImage[Math.min(Encoding.SIXTEEN_BIT_LIMIT,files.length)];
-			for (int i=0; i < frames.length; i++) {
-				frames[i] = ImageIO.read(files[i]);
-			}
-			
-			// return BufferedImage array
-			return frames;
+			// return file array
+			return files;
 			
 		} catch (Exception e) {
 			throw new IOException("FileSystem error: "+e.getMessage());
 		}
 	}
+	
+	
+	/**
+	 * Load image from filesystem
+	 * @param file Image file
+	 * @return BufferedImage
+	 * @throws IOException Problem accessing filesystem or unreadable image
+	 */
+	public static BufferedImage readImage(File file) throws IOException {
+		
+		try {
+			
+			// decode image
+			BufferedImage image = ImageIO.read(file);
+			if (image == null) throw new IOException("unreadable image");
+			
+			// return BufferedImage
+			return image;
+			
+		} catch (Exception e) {
+			throw new IOException(String.format("FileSystem error: problem reading '%s': %s",file.getName(),e.getMessage()));
+		}
+	}
+	
+	
+	/**
+	 * Load a region of an image from filesystem at reduced resolution, decoding only the
+	 * rows and columns of the region and keeping every step-th pixel along each axis
+	 * @param file Image file
+	 * @param x Top left x coordinate of the region
+	 * @param y Top left y coordinate of the region
+	 * @param w Width of the region
+	 * @param h Height of the region
+	 * @param step Source pixels between consecutive decoded pixels
+	 * @return BufferedImage of ceil(w/step) by ceil(h/step) pixels
+	 * @throws IOException Problem accessing filesystem or unreadable image
+	 */
+	public static BufferedImage readImage(File file, int x, int y, int w, int h, int step) throws IOException {
+		
+		try (ImageInputStream input = ImageIO.createImageInputStream(file)) {
+			
+			// find reader for the image format
+			Iterator<ImageReader> readers = (input != null) ? ImageIO.getImageReaders(input) : null;
+			if (readers == null || !readers.hasNext()) throw new IOException("unreadable image");
+			ImageReader reader = readers.next();
+			
+			try {
+				
+				// throw regions outside the image
+				reader.setInput(input, true, true);
+				if (x < 0 || y < 0 || x+w > reader.getWidth(0) || y+h > reader.getHeight(0)) throw new IOException(String.format("region %dx%d from (%d,%d) outside image",w,h,x,y));
+				
+				// decode region at reduced resolution
+				ImageReadParam param = reader.getDefaultReadParam();
+				param.setSourceRegion(new Rectangle(x, y, w, h));
+				param.setSourceSubsampling(step, step, 0, 0);
+				return reader.read(0, param);
+				
+			} finally {
+				reader.dispose();
+			}
+			
+		} catch (Exception e) {
+			throw new IOException(String.format("FileSystem error: problem reading '%s': %s",file.getName(),e.getMessage()));
+		}
+	}
 }
@@ -0,0 +1,78 @@
+package motionvdl.model.data;
+
+/**
+ * Greyscale frame store backed by one byte array slice per frame
+ * @author Joseph
+ */
+public class ArrayFrameStore extends GreyFrameStore {
+
+	// frame slices
+	private final byte[][] slices;
+
+	/**
+	 * Construct empty store
+	 * @param width Frame width
+	 * @param height Frame height
+	 * @param length Number of frames
+	 * @throws ArrayIndexOutOfBoundsException Dimensions less than 1
+	 */
+	public ArrayFrameStore(int width, int height, int length) throws ArrayIndexOutOfBoundsException {
+		super(width, height, length);
+		slices = new byte[length][width*height];
+	}
+
+
+	/**
+	 * Read frame greyscale bytes in row major order
+	 * @param index Index of the frame
+	 * @param grey Destination array
+	 * @param offset Offset into the destination array
+	 */
+	@Override
+	public void readGrey(int index, byte[] grey, int offset) {
+		System.arraycopy(slices[index], 0, grey, offset, slices[index].length);
+	}
+
+
+	/**
+	 * Write frame greyscale bytes in row major order
+	 * @param index Index of the frame
+	 * @param grey Source array
+	 * @param offset Offset into the source array
+	 */
+	@Override
+	public void writeGrey(int index, byte[] grey, int offset) {
+		System.arraycopy(grey, offset, slices[index], 0, slices[index].length);
+	}
+
+
+	/**
+	 * Read rectangular region of frame as packed rgb pixels with equal color channels
+	 * @param index Index of the frame
+	 * @param x Top left x coordinate of the region
+	 * @param y Top left y coordinate of the region
+	 * @param w Width of the region
+	 * @param h Height of the region
+	 * @param pixels Destination array of at least w*h elements
+	 */
+	@Override
+	public void readRGB(int index, int x, int y, int w, int h, int[] pixels) {
+		byte[] grey = slices[index];
+		for (int j=0; j < h; j++) {
+			int row = (y+j)*width+x;
+			for (int k=0; k < w; k++) {
+				pixels[j*w+k] = (grey[row+k] & 0xFF) * 0x010101;
+			}
+		}
+	}
+
+
+	/**
+	 * Regions are read from the frame rows they cover
+	 * @return True
+	 */
+	@Override
+	public boolean hasRegionReads() {
+		return true;
+	}
+}
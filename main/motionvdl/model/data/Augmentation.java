@@ -0,0 +1,236 @@
+package motionvdl.model.data;
+
+import java.util.SplittableRandom;
+
+/**
+ * Immutable geometric augmentation applied consistently to video frames and label points.
+ * Points are mirrored horizontally, rotated about the frame centre, then translated
+ * @author Joseph
+ */
+public class Augmentation {
+
+	// transform parameters
+	public final boolean flip;   // mirror horizontally
+	public final double angle;   // clockwise rotation in degrees
+	public final double shiftX;  // translation as a fraction of the frame width
+	public final double shiftY;  // translation as a fraction of the frame height
+
+	/**
+	 * Construct augmentation
+	 * @param flip Mirror horizontally
+	 * @param angle Clockwise rotation about the frame centre in degrees
+	 * @param shiftX Horizontal translation as a fraction of the frame width
+	 * @param shiftY Vertical translation as a fraction of the frame height
+	 */
+	public Augmentation(boolean flip, double angle, double shiftX, double shiftY) {
+		this.flip = flip;
+		this.angle = angle;
+		this.shiftX = shiftX;
+		this.shiftY = shiftY;
+	}
+
+
+	/**
+	 * Generate seeded random augmentations
+	 * @param count Number of augmentations
+	 * @param maxAngle Largest rotation in degrees either way
+	 * @param maxShift Largest translation as a fraction of the frame either way
+	 * @param seed Random seed
+	 * @return Augmentations
+	 */
+	public static Augmentation[] random(int count, double maxAngle, double maxShift, long seed) {
+		SplittableRandom random = new SplittableRandom(seed);
+		Augmentation[] augmentations = new Augmentation[count];
+		for (int i=0; i < count; i++) {
+			augmentations[i] = new Augmentation(
+				random.nextBoolean(),
+				(random.nextDouble()*2-1) * maxAngle,
+				(random.nextDouble()*2-1) * maxShift,
+				(random.nextDouble()*2-1) * maxShift);
+		}
+		return augmentations;
+	}
+
+
+	/**
+	 * Enumerate every combination of flip, rotation and translation
+	 * @param angles Rotations in degrees
+	 * @param shifts Translations as a fraction of the frame, applied along each axis
+	 * @return Augmentations
+	 */
+	public static Augmentation[] enumerate(double[] angles, double[] shifts) {
+		Augmentation[] augmentations = new Augmentation[2*angles.length*shifts.length*shifts.length];
+		int i = 0;
+		for (boolean flip : new boolean[] {false, true}) {
+			for (double angle : angles) {
+				for (double shiftX : shifts) {
+					for (double shiftY : shifts) {
+						augmentations[i++] = new Augmentation(flip, angle, shiftX, shiftY);
+					}
+				}
+			}
+		}
+		return augmentations;
+	}
+
+
+	/**
+	 * Get augmented labelled video. Frames are transformed when read, so no augmented
+	 * frames are held in memory, and the label is a transformed copy
+	 * @param source Labelled video
+	 * @return Augmented labelled video
+	 * @throws IllegalArgumentException Augmentation moves a label point outside the frame
+	 */
+	public LabeledVideo apply(LabeledVideo source) throws IllegalArgumentException {
+		Video video = new Video(new AugmentedFrameStore(source.video.getStore(), this));
+		return new LabeledVideo(video, apply(source.label, source.video.width, source.video.height));
+	}
+
+
+	/**
+	 * Check if every point of a label stays inside the frame once transformed
+	 * @param label Label
+	 * @param width Frame width
+	 * @param height Frame height
+	 * @return Result
+	 */
+	public boolean fits(Label label, int width, int height) {
+		return getOutside(label, width, height) < 0;
+	}
+
+
+	/**
+	 * Get copy of a label with every point transformed. Points are never moved to the
+	 * frame edge, as that would label the wrong position
+	 * @param label Label
+	 * @param width Frame width
+	 * @param height Frame height
+	 * @return Transformed label
+	 * @throws IllegalArgumentException Augmentation moves a point outside the frame
+	 */
+	public Label apply(Label label, int width, int height) throws IllegalArgumentException {
+
+		// throw points moved outside the frame
+		int outside = getOutside(label, width, height);
+		if (outside >= 0) throw new IllegalArgumentException(String.format("Augmentation error: %s moves a point of frame %d outside the frame",this,outside));
+
+		// transform every point
+		Label augmented = new Label(label.length, label.capacity);
+		double[] point = new double[2];
+		for (int i=0; i < label.length; i++) {
+			for (Point p : label.getPoints(i)) {
+				transform(p, point, width, height);
+				augmented.push(i, point[0], point[1]);
+			}
+		}
+		return augmented;
+	}
+
+
+	/**
+	 * Find the first frame with a point moved outside the frame
+	 * @return Index of the frame, -1 when every point stays inside
+	 */
+	private int getOutside(Label label, int width, int height) {
+		double[] point = new double[2];
+		for (int i=0; i < label.length; i++) {
+			for (Point p : label.getPoints(i)) {
+				transform(p, point, width, height);
+				if (point[0] < 0 || point[0] > 1 || point[1] < 0 || point[1] > 1) return i;
+			}
+		}
+		return -1;
+	}
+
+
+	/**
+	 * Transform a normalised label point into normalised coordinates
+	 */
+	private void transform(Point p, double[] point, int width, int height) {
+		point[0] = p.getX() * width;
+		point[1] = p.getY() * height;
+		forward(point, width, height);
+		point[0] /= width;
+		point[1] /= height;
+	}
+
+
+	/**
+	 * Transform a frame, sampling each target pixel bilinearly from the source and
+	 * clamping samples outside the source to its edge
+	 * @param source Source greyscale frame
+	 * @param target Destination greyscale frame
+	 * @param offset Offset into the destination array
+	 * @param width Frame width
+	 * @param height Frame height
+	 */
+	public void apply(byte[] source, byte[] target, int offset, int width, int height) {
+
+		// determine source position and per column step of the inverse transform
+		double[] origin = new double[2];
+		double[] step = new double[2];
+		double[] point = new double[2];
+		for (int j=0; j < height; j++) {
+			origin[0] = 0.5;
+			origin[1] = j+0.5;
+			step[0] = 1.5;
+			step[1] = j+0.5;
+			inverse(origin, width, height);
+			inverse(step, width, height);
+			double dx = step[0] - origin[0];
+			double dy = step[1] - origin[1];
+
+			// sample each pixel of the row
+			for (int k=0; k < width; k++) {
+				point[0] = origin[0] + k*dx - 0.5;
+				point[1] = origin[1] + k*dy - 0.5;
+				double fx = Math.min(Math.max(point[0], 0), width-1);
+				double fy = Math.min(Math.max(point[1], 0), height-1);
+				int x0 = (int) fx;
+				int y0 = (int) fy;
+				int x1 = Math.min(x0+1, width-1);
+				int y1 = Math.min(y0+1, height-1);
+				double wx = fx - x0;
+				double wy = fy - y0;
+				double top    = (source[y0*width+x0] & 0xFF) * (1-wx) + (source[y0*width+x1] & 0xFF) * wx;
+				double bottom = (source[y1*width+x0] & 0xFF) * (1-wx) + (source[y1*width+x1] & 0xFF) * wx;
+				target[offset + j*width+k] = (byte) (int) Math.round(top * (1-wy) + bottom * wy);
+			}
+		}
+	}
+
+
+	/**
+	 * Transform pixel coordinates forward, flipping, rotating then translating
+	 */
+	private void forward(double[] point, int width, int height) {
+		double cx = width / 2.0;
+		double cy = height / 2.0;
+		double radians = Math.toRadians(angle);
+		double x = flip ? width - point[0] : point[0];
+		double y = point[1];
+		point[0] = cx + Math.cos(radians)*(x-cx) - Math.sin(radians)*(y-cy) + shiftX*width;
+		point[1] = cy + Math.sin(radians)*(x-cx) + Math.cos(radians)*(y-cy) + shiftY*height;
+	}
+
+
+	/**
+	 * Transform pixel coordinates back, translating, rotating then flipping
+	 */
+	private void inverse(double[] point, int width, int height) {
+		double cx = width / 2.0;
+		double cy = height / 2.0;
+		double radians = Math.toRadians(angle);
+		double x = point[0] - shiftX*width - cx;
+		double y = point[1] - shiftY*height - cy;
+		point[0] = cx + Math.cos(radians)*x + Math.sin(radians)*y;
+		point[1] = cy - Math.sin(radians)*x + Math.cos(radians)*y;
+		if (flip) point[0] = width - point[0];
+	}
+
+
+	@Override
+	public String toString() {
+		return String.format("(flip=%b, angle=%.2f, shift=%.3f,%.3f)",flip,angle,shiftX,shiftY);
+	}
+}
@@ -0,0 +1,48 @@
+package motionvdl.model.data;
+
+/**
+ * Read only greyscale frame store view that applies an augmentation to the
+ * frames of another store as they are read
+ * @author Joseph
+ */
+public class AugmentedFrameStore extends GreyFrameStore {
+
+	// source store and transform
+	private final FrameStore source;
+	private final Augmentation augmentation;
+
+	/**
+	 * Construct augmented view of a source store
+	 * @param source Source store
+	 * @param augmentation Augmentation applied to each frame
+	 */
+	public AugmentedFrameStore(FrameStore source, Augmentation augmentation) {
+		super(source.width, source.height, source.length);
+		this.source = source;
+		this.augmentation = augmentation;
+	}
+
+
+	/**
+	 * Read augmented frame greyscale bytes in row major order
+	 * @param index Index of the frame
+	 * @param grey Destination array
+	 * @param offset Offset into the destination array
+	 */
+	@Override
+	public void readGrey(int index, byte[] grey, int offset) {
+		byte[] frame = new byte[width*height];
+		source.readGrey(index, frame, 0);
+		augmentation.apply(frame, grey, offset, width, height);
+	}
+
+
+	/**
+	 * Augmented frames are read only
+	 * @throws UnsupportedOperationException Always
+	 */
+	@Override
+	public void writeGrey(int index, byte[] grey, int offset) throws UnsupportedOperationException {
+		throw new UnsupportedOperationException("AugmentedFrameStore error: store is read only");
+	}
+}
@@ -0,0 +1,81 @@
+package motionvdl.model.data;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Frame store view of a rectangular region of another store. No pixels are
+ * copied, region reads are offset into the source store and frames are
+ * returned as sub images sharing the source raster
+ * @author Joseph
+ */
+public class CropFrameStore extends FrameStore {
+
+	// source store and region offset
+	private final FrameStore source;
+	private final int x;
+	private final int y;
+
+	/**
+	 * Construct view of a rectangular region of a source store
+	 * @param source Source store
+	 * @param x Top left x coordinate of the region
+	 * @param y Top left y coordinate of the region
+	 * @param w Width of the region
+	 * @param h Height of the region
+	 * @throws IllegalArgumentException Region outside the source store
+	 */
+	public CropFrameStore(FrameStore source, int x, int y, int w, int h) throws IllegalArgumentException {
+		super(w, h, source.length);
+
+		// throw invalid parameters
+		if (0 > x || x+w > source.width || 0 > y || y+h > source.height) throw new IllegalArgumentException(String.format("CropFrameStore error: region %dx%d from (%d,%d) outside source",w,h,x,y));
+
+		// view the original store directly rather than chaining views
+		if (source instanceof CropFrameStore) {
+			CropFrameStore crop = (CropFrameStore) source;
+			this.source = crop.source;
+			this.x = crop.x + x;
+			this.y = crop.y + y;
+		} else {
+			this.source = source;
+			this.x = x;
+			this.y = y;
+		}
+	}
+
+
+	/**
+	 * Get frame by index as a sub image sharing the source raster
+	 * @param index Index of the frame
+	 * @return Image of frame
+	 */
+	@Override
+	public BufferedImage getFrame(int index) {
+		return source.getFrame(index).getSubimage(x, y, width, height);
+	}
+
+
+	/**
+	 * Read rectangular region of frame from the source store
+	 * @param index Index of the frame
+	 * @param x Top left x coordinate of the region
+	 * @param y Top left y coordinate of the region
+	 * @param w Width of the region
+	 * @param h Height of the region
+	 * @param pixels Destination array of at least w*h elements
+	 */
+	@Override
+	public void readRGB(int index, int x, int y, int w, int h, int[] pixels) {
+		source.readRGB(index, this.x+x, this.y+y, w, h, pixels);
+	}
+
+
+	/**
+	 * Regions are read from the source store
+	 * @return Result of the source store
+	 */
+	@Override
+	public boolean hasRegionReads() {
+		return source.hasRegionReads();
+	}
+}
@@ -0,0 +1,205 @@
+package motionvdl.model.data;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import motionvdl.Debug;
+
+/**
+ * Greyscale frame store backed by direct byte buffers outside the garbage collected heap.
+ * The memory is freed when the store is released.
+ * <p>
+ * Frame copies register with the store monitor and happen outside it, so frames are read
+ * and written in parallel, while release marks the store released then waits for copies
+ * in progress before freeing the buffers, so no copy touches freed memory
+ * @author Joseph
+ */
+public class DirectFrameStore extends GreyFrameStore {
+
+	// buffer cleaner, null when unavailable
+	private static final Object UNSAFE;
+	private static final Method INVOKE_CLEANER;
+	static {
+		Object unsafe = null;
+		Method invokeCleaner = null;
+		try {
+			Class<?> type = Class.forName("sun.misc.Unsafe");
+			Field field = type.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			unsafe = field.get(null);
+			invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+		} catch (Exception e) {
+			Debug.trace("DirectFrameStore: buffer cleaner unavailable, memory is freed by the garbage collector");
+		}
+		UNSAFE = unsafe;
+		INVOKE_CLEANER = invokeCleaner;
+	}
+
+	// buffer layout
+	private final int volume;         // bytes per frame
+	private final int framesPerChunk; // whole frames per buffer
+	private final ByteBuffer[] chunks;
+
+	// lifecycle, guarded by the store monitor
+	private int users = 0;            // frame copies in progress
+	private boolean released = false;
+
+	/**
+	 * Construct empty store
+	 * @param width Frame width
+	 * @param height Frame height
+	 * @param length Number of frames
+	 * @throws ArrayIndexOutOfBoundsException Dimensions less than 1
+	 */
+	public DirectFrameStore(int width, int height, int length) throws ArrayIndexOutOfBoundsException {
+		super(width, height, length);
+
+		// determine layout, each buffer holds as many whole frames as fit in 2GB
+		volume = width*height;
+		framesPerChunk = Math.max(1, Integer.MAX_VALUE / volume);
+		chunks = new ByteBuffer[(length + framesPerChunk - 1) / framesPerChunk];
+
+		// allocate buffers
+		for (int i=0; i < chunks.length; i++) {
+			int frames = Math.min(framesPerChunk, length - i*framesPerChunk);
+			chunks[i] = ByteBuffer.allocateDirect(frames*volume);
+		}
+
+		// debug trace
+		Debug.trace(String.format("Created (%d,%d,%d) direct frame store",length,height,width));
+	}
+
+
+	/**
+	 * Get the buffer holding a frame for a copy, the caller must call done afterwards
+	 * @param index Index of the frame
+	 * @return Buffer
+	 * @throws IllegalStateException Store has been released
+	 */
+	private synchronized ByteBuffer acquire(int index) throws IllegalStateException {
+		if (released) throw new IllegalStateException("DirectFrameStore error: store has been released");
+		users++;
+		return chunks[index / framesPerChunk];
+	}
+
+
+	/**
+	 * Finish a copy and wake a release waiting for it
+	 */
+	private synchronized void done() {
+		if (--users == 0) notifyAll();
+	}
+
+
+	/**
+	 * Read frame greyscale bytes in row major order
+	 * @param index Index of the frame
+	 * @param grey Destination array
+	 * @param offset Offset into the destination array
+	 */
+	@Override
+	public void readGrey(int index, byte[] grey, int offset) {
+		ByteBuffer chunk = acquire(index);
+		try {
+			chunk.get((index % framesPerChunk) * volume, grey, offset, volume);
+		} finally {
+			done();
+		}
+	}
+
+
+	/**
+	 * Write frame greyscale bytes in row major order
+	 * @param index Index of the frame
+	 * @param grey Source array
+	 * @param offset Offset into the source array
+	 */
+	@Override
+	public void writeGrey(int index, byte[] grey, int offset) {
+		ByteBuffer chunk = acquire(index);
+		try {
+			chunk.put((index % framesPerChunk) * volume, grey, offset, volume);
+		} finally {
+			done();
+		}
+	}
+
+
+	/**
+	 * Read rectangular region of frame as packed rgb pixels with equal color channels
+	 * @param index Index of the frame
+	 * @param x Top left x coordinate of the region
+	 * @param y Top left y coordinate of the region
+	 * @param w Width of the region
+	 * @param h Height of the region
+	 * @param pixels Destination array of at least w*h elements
+	 */
+	@Override
+	public void readRGB(int index, int x, int y, int w, int h, int[] pixels) {
+		ByteBuffer chunk = acquire(index);
+		try {
+			int start = (index % framesPerChunk) * volume;
+			for (int j=0; j < h; j++) {
+				int row = start + (y+j)*width + x;
+				for (int k=0; k < w; k++) {
+					pixels[j*w+k] = (chunk.get(row+k) & 0xFF) * 0x010101;
+				}
+			}
+		} finally {
+			done();
+		}
+	}
+
+
+	/**
+	 * Regions are read from the frame rows they cover
+	 * @return True
+	 */
+	@Override
+	public boolean hasRegionReads() {
+		return true;
+	}
+
+
+	/**
+	 * Free the direct buffers once copies in progress finish, the store cannot be used afterwards
+	 * and later copies throw IllegalStateException. When interrupted while waiting the buffers
+	 * are left to the garbage collector
+	 */
+	@Override
+	public synchronized void release() {
+
+		// ignore repeated release
+		if (released) return;
+		released = true;
+
+		// wait for copies in progress
+		while (users > 0) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				Debug.trace("DirectFrameStore: interrupted waiting to release, memory is freed by the garbage collector");
+				Arrays.fill(chunks, null);
+				return;
+			}
+		}
+
+		// free buffers
+		if (INVOKE_CLEANER != null) {
+			for (ByteBuffer chunk : chunks) {
+				try {
+					INVOKE_CLEANER.invoke(UNSAFE, chunk);
+				} catch (Exception e) {
+					Debug.trace("DirectFrameStore: problem freeing buffer "+e.getMessage());
+				}
+			}
+		}
+		Arrays.fill(chunks, null);
+
+		// debug trace
+		Debug.trace(String.format("DirectFrameStore: released (%d,%d,%d) store",length,height,width));
+	}
+}
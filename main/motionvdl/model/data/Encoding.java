@@ -1,6 +1,7 @@
 package motionvdl.model.data;
 
 import java.io.IOException;
+import java.io.OutputStream;
 
 import motionvdl.model.FileSystem;
 
@@ -22,12 +23,22 @@ public abstract class Encoding {
 	 */
 	public abstract byte[] getEncoding() throws ArrayIndexOutOfBoundsException;
 	
+	/**
+	 * Write byte encoding to output stream, by default the whole byte sequence at once
+	 * @param output Output stream
+	 * @throws IOException Problem writing to the stream
+	 * @throws ArrayIndexOutOfBoundsException Exceeding value limits
+	 */
+	public void write(OutputStream output) throws IOException, ArrayIndexOutOfBoundsException {
+		output.write(this.getEncoding());
+	}
+	
 	/**
 	 * Instance export method
 	 * @param location Filesystem location
 	 * @throws IOException Problem accessing filesystem
 	 */
 	public void export(String location) throws IOException {
-		FileSystem.writeBytes(this.getEncoding(), location);
+		FileSystem.writeEncoding(this, location);
 	}
 }
@@ -0,0 +1,221 @@
+package motionvdl.model.data;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import motionvdl.Debug;
+
+/**
+ * Immutable map from the frames of a selected video back to the frames of the source
+ * video it was selected from, such as after collapsing runs of near duplicate frames.
+ * Each source frame is represented by the latest selected frame at or before it
+ * @author Joseph
+ */
+public class FrameIndex extends Encoding {
+
+	// constants
+	public static final int DUPLICATE_DISTANCE = 4; // largest hash bit difference between duplicate frames
+
+	// metadata
+	public final int sourceLength;
+	public final int length;
+
+	// source frame index of each selected frame in ascending order
+	private final int[] indices;
+
+	/**
+	 * Construct index of selected source frames
+	 * @param sourceLength Number of source frames
+	 * @param indices Source frame index of each selected frame in ascending order
+	 * @throws IllegalArgumentException Indices out of order or outside the source
+	 */
+	public FrameIndex(int sourceLength, int[] indices) throws IllegalArgumentException {
+
+		// throw exceptions
+		if (indices.length < 1) throw new IllegalArgumentException("FrameIndex error: no frames selected");
+		for (int i=0; i < indices.length; i++) {
+			if (indices[i] < 0 || indices[i] >= sourceLength || (i > 0 && indices[i] <= indices[i-1])) throw new IllegalArgumentException(String.format("FrameIndex error: invalid source frame %d",indices[i]));
+		}
+
+		// setup index
+		this.sourceLength = sourceLength;
+		this.length = indices.length;
+		this.indices = indices.clone();
+
+		// debug trace
+		Debug.trace(String.format("Created frame index of %d from %d frames",length,sourceLength));
+	}
+
+	/**
+	 * Construct index from byte sequence
+	 * @param encoding Byte sequence
+	 * @throws IllegalArgumentException Malformed byte sequence
+	 */
+	public FrameIndex(byte[] encoding) throws IllegalArgumentException {
+		this(decodeLength(encoding), decodeIndices(encoding));
+	}
+
+	// decode source length
+	private static int decodeLength(byte[] encoding) throws IllegalArgumentException {
+		if (encoding.length < 8) throw new IllegalArgumentException("FrameIndex error: problem decoding bytes");
+		return ByteBuffer.wrap(encoding).getInt(0);
+	}
+
+	// decode selected indices
+	private static int[] decodeIndices(byte[] encoding) throws IllegalArgumentException {
+		ByteBuffer buffer = ByteBuffer.wrap(encoding);
+		int count = buffer.getInt(4);
+		if (count < 0 || encoding.length != 8 + 4L*count) throw new IllegalArgumentException("FrameIndex error: problem decoding bytes");
+		int[] indices = new int[count];
+		buffer.position(8);
+		buffer.asIntBuffer().get(indices);
+		return indices;
+	}
+
+
+	/**
+	 * Determine the difference hash of every frame. Each frame is downscaled to 9x8 greyscale
+	 * and each bit records whether a pixel is brighter than its right neighbour, so frames
+	 * that look alike have hashes that differ in few bits
+	 * @param video Video
+	 * @return Hash of each frame
+	 */
+	public static long[] getHashes(Video video) {
+		long[] hashes = new long[video.length];
+		FramePool.forEach(video.length, i -> {
+
+			// downscale to greyscale thumbnail
+			int[] pixels = new int[9*8];
+			byte[] grey = new byte[9*8];
+			video.resampleFrame(i, 0, 0, video.width, video.height, Resampler.Filter.AREA, pixels, 9, 8);
+			Greyscale.convert(Greyscale.Formula.MEAN, pixels, grey, 0, grey.length);
+
+			// compare horizontal neighbours
+			long hash = 0;
+			for (int j=0; j < 8; j++) {
+				for (int k=0; k < 8; k++) {
+					hash = hash << 1 | ((grey[j*9+k] & 0xFF) > (grey[j*9+k+1] & 0xFF) ? 1 : 0);
+				}
+			}
+			hashes[i] = hash;
+		});
+		return hashes;
+	}
+
+
+	/**
+	 * Collapse runs of near duplicate frames, keeping the first frame of each run. A frame
+	 * starts a new run when its hash differs from the first frame of the current run by
+	 * more than the given number of bits, so slow drift cannot extend a run indefinitely
+	 * @param video Video
+	 * @param distance Largest hash bit difference between duplicate frames
+	 * @return Index of the first frame of each run
+	 */
+	public static FrameIndex getDeduplicated(Video video, int distance) {
+
+		// hash frames
+		long[] hashes = getHashes(video);
+
+		// keep the first frame of each run
+		int[] kept = new int[video.length];
+		int count = 0;
+		long anchor = 0;
+		for (int i=0; i < video.length; i++) {
+			if (i == 0 || Long.bitCount(hashes[i] ^ anchor) > distance) {
+				kept[count++] = i;
+				anchor = hashes[i];
+			}
+		}
+
+		// debug trace
+		Debug.trace(String.format("FrameIndex: collapsed %d frames to %d",video.length,count));
+
+		return new FrameIndex(video.length, Arrays.copyOf(kept, count));
+	}
+
+
+	/**
+	 * Get the source frame index of a selected frame
+	 * @param index Index of the selected frame
+	 * @return Source frame index
+	 */
+	public int getSource(int index) {
+		return indices[index];
+	}
+
+
+	/**
+	 * Get the selected frame representing each source frame
+	 * @return Selected frame index of each source frame
+	 */
+	public int[] getMap() {
+		int[] map = new int[sourceLength];
+		int selected = 0;
+		for (int i=0; i < sourceLength; i++) {
+			while (selected+1 < length && indices[selected+1] <= i) selected++;
+			map[i] = selected;
+		}
+		return map;
+	}
+
+
+	/**
+	 * Get view of the selected frames of a source video
+	 * @param source Source video
+	 * @return Selected video
+	 * @throws IllegalArgumentException Source length does not match
+	 */
+	public Video getSelected(Video source) throws IllegalArgumentException {
+		if (source.length != sourceLength) throw new IllegalArgumentException(String.format("FrameIndex error: video length %d does not match source length %d",source.length,sourceLength));
+		return new Video(new IndexFrameStore(source.getStore(), indices));
+	}
+
+
+	/**
+	 * Expand a label of the selected frames to every source frame, copying the stack
+	 * of the selected frame representing each source frame
+	 * @param label Label of the selected frames
+	 * @return Label of the source frames
+	 * @throws IllegalArgumentException Label length does not match
+	 */
+	public Label getExpanded(Label label) throws IllegalArgumentException {
+		if (label.length != length) throw new IllegalArgumentException(String.format("FrameIndex error: label length %d does not match index length %d",label.length,length));
+		int[] map = getMap();
+		Label[] stacks = new Label[sourceLength];
+		for (int i=0; i < sourceLength; i++) {
+			stacks[i] = label.getRange(map[i], map[i]+1);
+		}
+		return new Label(stacks);
+	}
+
+
+	/**
+	 * Select every stride-th frame of a range of the selected frames
+	 * @param start Index of the first selected frame
+	 * @param end Index after the last selected frame
+	 * @param stride Frames between consecutive selected frames
+	 * @return Index of the remaining frames
+	 * @throws IllegalArgumentException Invalid range or stride
+	 */
+	public FrameIndex getTrimmed(int start, int end, int stride) throws IllegalArgumentException {
+		if (0 > start || start >= end || end > length || stride < 1) throw new IllegalArgumentException(String.format("FrameIndex error: invalid selection '%d:%d:%d'",start,end,stride));
+		int[] trimmed = new int[(end-start+stride-1)/stride];
+		for (int i=0; i < trimmed.length; i++) trimmed[i] = indices[start+i*stride];
+		return new FrameIndex(sourceLength, trimmed);
+	}
+
+
+	/**
+	 * Encode as byte sequence of the source length, the selected frame count and the
+	 * source frame index of each selected frame, as 32 bit integers
+	 * @return Byte sequence
+	 */
+	@Override
+	public byte[] getEncoding() {
+		ByteBuffer buffer = ByteBuffer.allocate(8 + 4*length);
+		buffer.putInt(sourceLength);
+		buffer.putInt(length);
+		buffer.asIntBuffer().put(indices);
+		return buffer.array();
+	}
+}
@@ -0,0 +1,74 @@
+package motionvdl.model.data;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+import motionvdl.Debug;
+
+/**
+ * Shared fork-join pool for running independent per-frame tasks across cores
+ * @author Joseph
+ */
+public final class FramePool {
+
+	// variables and components
+	private static int parallelism = Runtime.getRuntime().availableProcessors();
+	private static ForkJoinPool pool = new ForkJoinPool(parallelism);
+
+	// uninstantiable object
+	private FramePool() {}
+
+
+	/**
+	 * Setup the pool parallelism, 1 runs every task on the calling thread
+	 * @param threads Number of worker threads
+	 * @throws IllegalArgumentException Thread count less than 1
+	 */
+	public static synchronized void setup(int threads) throws IllegalArgumentException {
+
+		// throw invalid parameters
+		if (threads < 1) throw new IllegalArgumentException(String.format("FramePool error: invalid thread count '%d'",threads));
+
+		// replace pool
+		pool.shutdown();
+		parallelism = threads;
+		pool = new ForkJoinPool(parallelism);
+
+		// debug trace
+		Debug.trace(String.format("FramePool: parallelism set to %d",parallelism));
+	}
+
+
+	/**
+	 * Get the pool parallelism
+	 * @return Number of worker threads
+	 */
+	public static int getParallelism() {
+		return parallelism;
+	}
+
+
+	/**
+	 * Run a task for each frame index and wait for completion. Tasks must only
+	 * write to state owned by their own index so the result is independent of
+	 * scheduling and thread count
+	 * @param length Number of frames
+	 * @param task Task receiving the frame index
+	 */
+	public static void forEach(int length, IntConsumer task) {
+
+		// run on calling thread when there is nothing to split
+		ForkJoinPool current;
+		synchronized (FramePool.class) {
+			current = (parallelism > 1 && length > 1) ? pool : null;
+		}
+		if (current == null) {
+			for (int i=0; i < length; i++) task.accept(i);
+			return;
+		}
+
+		// split frame range across the pool
+		current.submit(() -> IntStream.range(0, length).parallel().forEach(task)).join();
+	}
+}
@@ -0,0 +1,195 @@
+package motionvdl.model.data;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import motionvdl.Debug;
+
+/**
+ * Greyscale pixel statistics of a video, the mean and standard deviation of each frame
+ * and the grey level histogram of every frame together. Statistics are accumulated one
+ * frame at a time while frames are encoded, frames may be accumulated in parallel.
+ * <p>
+ * Encoded as 32 bit frame count, the 64 bit count of each of the 256 grey levels, then
+ * the 64 bit floating point mean and standard deviation of each frame
+ * @author Joseph
+ */
+public class FrameStatistics extends Encoding {
+
+	// metadata
+	public final int length;
+
+	// statistics
+	private final double[] mean;
+	private final double[] std;
+	private final AtomicLongArray histogram;
+
+	/**
+	 * Construct empty statistics to be accumulated
+	 * @param length Number of frames
+	 */
+	public FrameStatistics(int length) {
+		this.length = length;
+		this.mean = new double[length];
+		this.std = new double[length];
+		this.histogram = new AtomicLongArray(256);
+	}
+
+	/**
+	 * Construct statistics by joining the statistics of consecutive segments
+	 * @param segments Statistics of each segment
+	 */
+	public FrameStatistics(FrameStatistics[] segments) {
+		this(joinedLength(segments));
+		int position = 0;
+		for (FrameStatistics segment : segments) {
+			System.arraycopy(segment.mean, 0, mean, position, segment.length);
+			System.arraycopy(segment.std, 0, std, position, segment.length);
+			for (int v=0; v < 256; v++) histogram.addAndGet(v, segment.histogram.get(v));
+			position += segment.length;
+		}
+	}
+
+	// determine joined length
+	private static int joinedLength(FrameStatistics[] segments) {
+		long length = 0;
+		for (FrameStatistics segment : segments) length += segment.length;
+		if (length > Integer.MAX_VALUE) throw new ArrayIndexOutOfBoundsException("FrameStatistics error: too many frames");
+		return (int) length;
+	}
+
+	/**
+	 * Construct statistics from byte sequence
+	 * @param encoding Byte sequence
+	 * @throws IllegalArgumentException Malformed byte sequence
+	 */
+	public FrameStatistics(byte[] encoding) throws IllegalArgumentException {
+		this(decodeLength(encoding));
+		ByteBuffer buffer = ByteBuffer.wrap(encoding, 4, encoding.length-4);
+		for (int v=0; v < 256; v++) histogram.set(v, buffer.getLong());
+		for (int i=0; i < length; i++) {
+			mean[i] = buffer.getDouble();
+			std[i] = buffer.getDouble();
+		}
+
+		// debug trace
+		Debug.trace(String.format("Created statistics of %d frames from byte sequence",length));
+	}
+
+	// decode frame count
+	private static int decodeLength(byte[] encoding) throws IllegalArgumentException {
+		if (encoding.length < 4) throw new IllegalArgumentException("FrameStatistics error: problem decoding bytes");
+		int length = ByteBuffer.wrap(encoding).getInt();
+		if (length < 0 || encoding.length != 4 + 8L*256 + 16L*length) throw new IllegalArgumentException("FrameStatistics error: problem decoding bytes");
+		return length;
+	}
+
+
+	/**
+	 * Accumulate the statistics of a greyscale frame. Pixel sums are exact integers, so the
+	 * mean and variance are computed in one pass without loss of precision
+	 * @param index Index of the frame
+	 * @param grey Greyscale frame
+	 * @param offset Offset into the greyscale array
+	 * @param volume Number of pixels in the frame
+	 */
+	public void accumulate(int index, byte[] grey, int offset, int volume) {
+
+		// count each grey level of the frame
+		long[] counts = new long[256];
+		for (int p=offset; p < offset+volume; p++) {
+			counts[grey[p] & 0xFF]++;
+		}
+
+		// determine frame moments from the counts
+		long sum = 0;
+		long squares = 0;
+		for (int v=0; v < 256; v++) {
+			if (counts[v] == 0) continue;
+			sum += counts[v]*v;
+			squares += counts[v]*v*v;
+			histogram.addAndGet(v, counts[v]);
+		}
+		mean[index] = (double) sum / volume;
+		std[index] = Math.sqrt(Math.max(0, (double) squares / volume - mean[index]*mean[index]));
+	}
+
+
+	/**
+	 * Get the mean grey level of a frame
+	 * @param index Index of the frame
+	 * @return Mean grey level
+	 */
+	public double getMean(int index) {
+		return mean[index];
+	}
+
+
+	/**
+	 * Get the standard deviation of the grey levels of a frame
+	 * @param index Index of the frame
+	 * @return Standard deviation
+	 */
+	public double getStd(int index) {
+		return std[index];
+	}
+
+
+	/**
+	 * Get the count of each grey level over every frame
+	 * @return Histogram of 256 grey levels
+	 */
+	public long[] getHistogram() {
+		long[] counts = new long[256];
+		for (int v=0; v < 256; v++) counts[v] = histogram.get(v);
+		return counts;
+	}
+
+
+	/**
+	 * Get the mean grey level over every frame
+	 * @return Mean grey level
+	 */
+	public double getGlobalMean() {
+		long count = 0;
+		double sum = 0;
+		for (int v=0; v < 256; v++) {
+			count += histogram.get(v);
+			sum += (double) histogram.get(v)*v;
+		}
+		return (count > 0) ? sum / count : 0;
+	}
+
+
+	/**
+	 * Get the standard deviation of the grey levels over every frame
+	 * @return Standard deviation
+	 */
+	public double getGlobalStd() {
+		double globalMean = getGlobalMean();
+		long count = 0;
+		double sum = 0;
+		for (int v=0; v < 256; v++) {
+			count += histogram.get(v);
+			sum += histogram.get(v) * (v-globalMean)*(v-globalMean);
+		}
+		return (count > 0) ? Math.sqrt(sum / count) : 0;
+	}
+
+
+	/**
+	 * Encode as byte sequence
+	 * @return Byte sequence
+	 */
+	@Override
+	public byte[] getEncoding() {
+		ByteBuffer buffer = ByteBuffer.allocate(4 + 8*256 + 16*length);
+		buffer.putInt(length);
+		for (int v=0; v < 256; v++) buffer.putLong(histogram.get(v));
+		for (int i=0; i < length; i++) {
+			buffer.putDouble(mean[i]);
+			buffer.putDouble(std[i]);
+		}
+		return buffer.array();
+	}
+}
@@ -0,0 +1,108 @@
+package motionvdl.model.data;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Superclass for the frame storage behind a video
+ * @author Joseph
+ */
+public abstract class FrameStore {
+
+	// metadata
+	public final int width;
+	public final int height;
+	public final int length;
+
+	/**
+	 * Setup store metadata
+	 * @param width Frame width
+	 * @param height Frame height
+	 * @param length Number of frames
+	 * @throws ArrayIndexOutOfBoundsException Dimensions less than 1
+	 */
+	protected FrameStore(int width, int height, int length) throws ArrayIndexOutOfBoundsException {
+
+		// throw exceptions
+		if (length < 1 || height < 1 || width < 1) throw new ArrayIndexOutOfBoundsException("FrameStore error: store cannot have zero shape");
+
+		// set metadata
+		this.width  = width;
+		this.height = height;
+		this.length = length;
+	}
+
+
+	/**
+	 * Get frame by index
+	 * @param index Index of the frame
+	 * @return Image of frame
+	 */
+	public abstract BufferedImage getFrame(int index);
+
+
+	/**
+	 * Read frame as packed rgb pixels in row major order
+	 * @param index Index of the frame
+	 * @param pixels Destination array of at least width*height elements
+	 */
+	public void readRGB(int index, int[] pixels) {
+		readRGB(index, 0, 0, width, height, pixels);
+	}
+
+
+	/**
+	 * Read rectangular region of frame as packed rgb pixels in row major order
+	 * @param index Index of the frame
+	 * @param x Top left x coordinate of the region
+	 * @param y Top left y coordinate of the region
+	 * @param w Width of the region
+	 * @param h Height of the region
+	 * @param pixels Destination array of at least w*h elements
+	 */
+	public void readRGB(int index, int x, int y, int w, int h, int[] pixels) {
+		getFrame(index).getRGB(x, y, w, h, pixels, 0, w);
+	}
+
+
+	/**
+	 * Check if reading a region of a frame touches only about the region rather than the
+	 * whole frame, by default true as regions are read from the decoded frame image
+	 * @return Result
+	 */
+	public boolean hasRegionReads() {
+		return true;
+	}
+
+
+	/**
+	 * Read frame as greyscale bytes in row major order, using the mean of the color channels
+	 * @param index Index of the frame
+	 * @param grey Destination array
+	 * @param offset Offset into the destination array
+	 */
+	public void readGrey(int index, byte[] grey, int offset) {
+
+		// read rgb pixels
+		int[] pixels = new int[width*height];
+		readRGB(index, pixels);
+
+		// convert rgb to greyscale 255
+		Greyscale.convert(Greyscale.Formula.MEAN, pixels, grey, offset, pixels.length);
+	}
+
+
+	/**
+	 * Get the number of leading frames that can be read without waiting for decoding,
+	 * by default every frame
+	 * @return Number of frames
+	 */
+	public int getLoaded() {
+		return length;
+	}
+
+
+	/**
+	 * Release resources held by the store, by default nothing. The store must not be used afterwards
+	 */
+	public void release() {}
+}
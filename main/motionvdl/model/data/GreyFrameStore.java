@@ -0,0 +1,163 @@
+package motionvdl.model.data;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+import motionvdl.Debug;
+
+/**
+ * Superclass for frame stores holding one greyscale byte per pixel
+ * @author Joseph
+ */
+public abstract class GreyFrameStore extends FrameStore {
+
+	/**
+	 * Storage used for allocated stores
+	 */
+	public enum Storage {
+		HEAP,   // byte arrays on the garbage collected heap
+		DIRECT; // direct byte buffers outside the garbage collected heap
+	}
+
+	// variables
+	private static Storage storage = Storage.DIRECT;
+	private static long budget = Runtime.getRuntime().maxMemory() / 2;
+	private static String scratchDirectory = System.getProperty("java.io.tmpdir");
+
+	/**
+	 * Setup store metadata
+	 * @param width Frame width
+	 * @param height Frame height
+	 * @param length Number of frames
+	 * @throws ArrayIndexOutOfBoundsException Dimensions less than 1
+	 */
+	protected GreyFrameStore(int width, int height, int length) throws ArrayIndexOutOfBoundsException {
+		super(width, height, length);
+	}
+
+
+	/**
+	 * Set the storage used for allocated stores
+	 * @param storage Storage
+	 */
+	public static void setStorage(Storage storage) {
+		GreyFrameStore.storage = storage;
+		Debug.trace(String.format("GreyFrameStore: storage set to %s",storage));
+	}
+
+
+	/**
+	 * Get the storage used for allocated stores
+	 * @return Storage
+	 */
+	public static Storage getStorage() {
+		return storage;
+	}
+
+
+	/**
+	 * Set the memory budget of allocated stores, larger stores spill their least recently
+	 * used frames to a scratch file so that only the budget is held in memory
+	 * @param bytes Memory budget in bytes
+	 * @param directory Filesystem directory location for scratch files
+	 */
+	public static void setBudget(long bytes, String directory) {
+		budget = bytes;
+		scratchDirectory = directory;
+		Debug.trace(String.format("GreyFrameStore: budget set to %d MB spilling to '%s'",bytes >> 20,directory));
+	}
+
+
+	/**
+	 * Get the memory budget of allocated stores
+	 * @return Memory budget in bytes
+	 */
+	public static long getBudget() {
+		return budget;
+	}
+
+
+	/**
+	 * Allocate an empty writable greyscale store using the current storage, or a
+	 * spilling store holding the budget in the current storage when the frames exceed it
+	 * @param width Frame width
+	 * @param height Frame height
+	 * @param length Number of frames
+	 * @return Greyscale store
+	 */
+	public static GreyFrameStore allocate(int width, int height, int length) {
+		if ((long) width*height*length > budget) return new SpillFrameStore(width, height, length, budget, scratchDirectory, storage);
+		return switch (storage) {
+			case HEAP   -> new ArrayFrameStore(width, height, length);
+			case DIRECT -> new DirectFrameStore(width, height, length);
+		};
+	}
+
+
+	/**
+	 * Read frame greyscale bytes in row major order
+	 * @param index Index of the frame
+	 * @param grey Destination array
+	 * @param offset Offset into the destination array
+	 */
+	@Override
+	public abstract void readGrey(int index, byte[] grey, int offset);
+
+
+	/**
+	 * Write frame greyscale bytes in row major order
+	 * @param index Index of the frame
+	 * @param grey Source array
+	 * @param offset Offset into the source array
+	 */
+	public abstract void writeGrey(int index, byte[] grey, int offset);
+
+
+	/**
+	 * Read rectangular region of frame as packed rgb pixels with equal color channels
+	 * @param index Index of the frame
+	 * @param x Top left x coordinate of the region
+	 * @param y Top left y coordinate of the region
+	 * @param w Width of the region
+	 * @param h Height of the region
+	 * @param pixels Destination array of at least w*h elements
+	 */
+	@Override
+	public void readRGB(int index, int x, int y, int w, int h, int[] pixels) {
+
+		// read greyscale bytes
+		byte[] grey = new byte[width*height];
+		readGrey(index, grey, 0);
+
+		// expand each byte in the region to three channels
+		for (int j=0; j < h; j++) {
+			for (int k=0; k < w; k++) {
+				pixels[j*w+k] = (grey[(y+j)*width+x+k] & 0xFF) * 0x010101;
+			}
+		}
+	}
+
+
+	/**
+	 * Check if reading a region of a frame touches only about the region, false unless
+	 * the store overrides the region read as the default reads the whole frame
+	 * @return Result
+	 */
+	@Override
+	public boolean hasRegionReads() {
+		return false;
+	}
+
+
+	/**
+	 * Materialise frame as an rgb image for display
+	 * @param index Index of the frame
+	 * @return Image of frame
+	 */
+	@Override
+	public BufferedImage getFrame(int index) {
+		BufferedImage frame = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		readRGB(index, ((DataBufferInt) frame.getRaster().getDataBuffer()).getData());
+		return frame;
+	}
+}
@@ -0,0 +1,64 @@
+package motionvdl.model.data;
+
+/**
+ * Collection of static greyscale conversion kernels over packed rgb pixel arrays.
+ * Kernels are branch free, division free loops over primitive arrays so the
+ * JIT compiler can vectorise them
+ * @author Joseph
+ */
+public final class Greyscale {
+
+	/**
+	 * Greyscale conversion formulas
+	 */
+	public enum Formula {
+		MEAN, // (r+g+b)/3, the formula used by the encoding
+		LUMA; // ITU-R BT.601 luma 0.299r+0.587g+0.114b
+
+		@Override
+		public String toString() {
+			return name().charAt(0) + name().substring(1).toLowerCase();
+		}
+	}
+
+	// uninstantiable object
+	private Greyscale() {}
+
+
+	/**
+	 * Convert packed rgb pixels to greyscale bytes
+	 * @param formula Conversion formula
+	 * @param pixels Source pixels
+	 * @param grey Destination array
+	 * @param offset Offset into the destination array
+	 * @param count Number of pixels
+	 */
+	public static void convert(Formula formula, int[] pixels, byte[] grey, int offset, int count) {
+		switch (formula) {
+			case MEAN -> mean(pixels, grey, offset, count);
+			case LUMA -> luma(pixels, grey, offset, count);
+		}
+	}
+
+
+	/**
+	 * Channel mean, dividing by 3 as a multiply and shift which is exact for sums up to 765
+	 */
+	private static void mean(int[] pixels, byte[] grey, int offset, int count) {
+		for (int i=0; i < count; i++) {
+			int rgb = pixels[i];
+			grey[offset+i] = (byte) ((((rgb >> 16) & 255) + ((rgb >> 8) & 255) + (rgb & 255)) * 21846 >>> 16);
+		}
+	}
+
+
+	/**
+	 * BT.601 luma with 8 bit fixed point weights 77, 150 and 29, rounded to nearest
+	 */
+	private static void luma(int[] pixels, byte[] grey, int offset, int count) {
+		for (int i=0; i < count; i++) {
+			int rgb = pixels[i];
+			grey[offset+i] = (byte) ((((rgb >> 16) & 255) * 77 + ((rgb >> 8) & 255) * 150 + (rgb & 255) * 29 + 128) >>> 8);
+		}
+	}
+}
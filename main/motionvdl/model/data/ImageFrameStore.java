@@ -0,0 +1,37 @@
+package motionvdl.model.data;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Frame store backed by a buffered image array
+ * @author Joseph
+ */
+public class ImageFrameStore extends FrameStore {
+
+	// frame buffer
+	private final BufferedImage[] buffer;
+
+	/**
+	 * Construct store from buffered image array
+	 * @param buffer Frames as buffered image array
+	 * @throws ArrayIndexOutOfBoundsException Buffer dimensions less than 1
+	 */
+	public ImageFrameStore(BufferedImage[] buffer) throws ArrayIndexOutOfBoundsException {
+		super(
+			buffer.length > 0 ? buffer[0].getWidth() : 0,
+			buffer.length > 0 ? buffer[0].getHeight() : 0,
+			buffer.length);
+		this.buffer = buffer;
+	}
+
+
+	/**
+	 * Get frame by index
+	 * @param index Index of the frame
+	 * @return Image of frame
+	 */
+	@Override
+	public BufferedImage getFrame(int index) {
+		return buffer[index];
+	}
+}
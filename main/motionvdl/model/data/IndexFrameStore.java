@@ -0,0 +1,107 @@
+package motionvdl.model.data;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Frame store view of an arbitrary selection of frames of another store
+ * @author Joseph
+ */
+public class IndexFrameStore extends FrameStore {
+
+	// source store and selected frames
+	private final FrameStore source;
+	private final int[] indices;
+
+	/**
+	 * Construct view of selected frames of a source store
+	 * @param source Source store
+	 * @param indices Source frame index of each frame
+	 * @throws IllegalArgumentException Index outside the source store
+	 */
+	public IndexFrameStore(FrameStore source, int[] indices) throws IllegalArgumentException {
+		super(source.width, source.height, indices.length);
+
+		// throw invalid parameters
+		for (int index : indices) {
+			if (0 > index || index >= source.length) throw new IllegalArgumentException(String.format("IndexFrameStore error: frame %d outside source",index));
+		}
+
+		// view the original store directly rather than chaining views
+		if (source instanceof IndexFrameStore) {
+			IndexFrameStore view = (IndexFrameStore) source;
+			this.source = view.source;
+			this.indices = new int[indices.length];
+			for (int i=0; i < indices.length; i++) this.indices[i] = view.indices[indices[i]];
+		} else {
+			this.source = source;
+			this.indices = indices.clone();
+		}
+	}
+
+
+	/**
+	 * Get view of the same selection of frames of another store
+	 * @param replacement Store of the same length as the source store
+	 * @return Frame store view
+	 */
+	IndexFrameStore getReplaced(FrameStore replacement) {
+		return new IndexFrameStore(replacement, indices);
+	}
+
+
+	/**
+	 * Get the source store
+	 * @return Frame store
+	 */
+	FrameStore getSource() {
+		return source;
+	}
+
+
+	/**
+	 * Get frame by index
+	 * @param index Index of the frame
+	 * @return Image of frame
+	 */
+	@Override
+	public BufferedImage getFrame(int index) {
+		return source.getFrame(indices[index]);
+	}
+
+
+	/**
+	 * Read rectangular region of frame from the source store
+	 * @param index Index of the frame
+	 * @param x Top left x coordinate of the region
+	 * @param y Top left y coordinate of the region
+	 * @param w Width of the region
+	 * @param h Height of the region
+	 * @param pixels Destination array of at least w*h elements
+	 */
+	@Override
+	public void readRGB(int index, int x, int y, int w, int h, int[] pixels) {
+		source.readRGB(indices[index], x, y, w, h, pixels);
+	}
+
+
+	/**
+	 * Regions are read from the source store
+	 * @return Result of the source store
+	 */
+	@Override
+	public boolean hasRegionReads() {
+		return source.hasRegionReads();
+	}
+
+
+	/**
+	 * Read frame as greyscale bytes from the source store
+	 * @param index Index of the frame
+	 * @param grey Destination array
+	 * @param offset Offset into the destination array
+	 */
+	@Override
+	public void readGrey(int index, byte[] grey, int offset) {
+		source.readGrey(indices[index], grey, offset);
+	}
+}
@@ -78,7 +78,110 @@ public class Label extends Encoding {
 		}
 	}
 	
+	/**
+	 * Construct label by joining labels end to end
+	 * @param segments Labels in order, all of the same capacity
+	 * @throws IllegalArgumentException No labels or capacities do not match
+	 */
+	public Label(Label[] segments) throws IllegalArgumentException {
+		
+		// throw exceptions
+		if (segments.length == 0) throw new IllegalArgumentException("Label error: no labels to join");
+		
+		// setup metadata
+		int total = 0;
+		for (Label segment : segments) {
+			if (segment.capacity != segments[0].capacity) throw new IllegalArgumentException("Label error: cannot join labels of different capacity");
+			total += segment.length;
+		}
+		this.length = total;
+		this.capacity = segments[0].capacity;
+		this.sizes = new int[length];
+		
+		// copy stacks
+		buffer = new Point[length][];
+		int offset = 0;
+		for (Label segment : segments) {
+			for (int i=0; i < segment.length; i++) {
+				sizes[offset+i] = segment.sizes[i];
+				buffer[offset+i] = segment.buffer[i].clone();
+			}
+			offset += segment.length;
+		}
+		
+		// debug trace
+		Debug.trace(String.format("Created (%d,%d) label from %d segments",length,capacity,segments.length));
+	}
+	
+	
+	/**
+	 * Get copy of a contiguous range of stacks
+	 * @param start Index of the first stack
+	 * @param end Index after the last stack
+	 * @return Label range
+	 * @throws IllegalArgumentException Invalid range
+	 */
+	public Label getRange(int start, int end) throws IllegalArgumentException {
+		return getTrimmed(start, end, 1);
+	}
+	
 	
+	/**
+	 * Get copy of every stride-th stack of a range
+	 * @param start Index of the first stack
+	 * @param end Index after the last stack
+	 * @param stride Stacks between consecutive selected stacks
+	 * @return Trimmed label
+	 * @throws IllegalArgumentException Invalid range or stride
+	 */
+	public Label getTrimmed(int start, int end, int stride) throws IllegalArgumentException {
+		
+		// throw invalid parameters
+		if (0 > start || start >= end || end > length) throw new IllegalArgumentException(String.format("Label error: invalid range '%d-%d'",start,end));
+		if (stride < 1) throw new IllegalArgumentException(String.format("Label error: invalid stride '%d'",stride));
+		
+		// copy stacks
+		Label trimmed = new Label((end-start+stride-1)/stride, capacity);
+		for (int i=0; i < trimmed.length; i++) {
+			trimmed.sizes[i] = sizes[start+i*stride];
+			trimmed.buffer[i] = buffer[start+i*stride].clone();
+		}
+		return trimmed;
+	}
+	
+	
+	/**
+	 * Get copy with points normalised to a square crop region of the frame they were placed on.
+	 * A stack is cut at its first point outside the region, so nodes keep their order and the
+	 * rest of the stack is left to label
+	 * @param x Top left x coordinate of the square crop region
+	 * @param y Top left y coordinate of the square crop region
+	 * @param crop Width and height of the square crop region
+	 * @param width Frame width
+	 * @param height Frame height
+	 * @return Cropped label
+	 * @throws IllegalArgumentException Invalid crop region
+	 */
+	public Label getCropped(int x, int y, int crop, int width, int height) throws IllegalArgumentException {
+
+		// throw invalid parameters
+		if (crop < 1 || x < 0 || y < 0 || x+crop > width || y+crop > height) throw new IllegalArgumentException(String.format("Label error: invalid crop region '%d,%d,%d' of %dx%d frame",x,y,crop,width,height));
+
+		// map stacks up to their first point outside the region
+		Label cropped = new Label(length, capacity);
+		for (int i=0; i < length; i++) {
+			for (int j=0; j < sizes[i]; j++) {
+				double px = (buffer[i][j].getX()*width - x) / crop;
+				double py = (buffer[i][j].getY()*height - y) / crop;
+				if (px < 0 || px > 1 || py < 0 || py > 1) break;
+				cropped.buffer[i][j] = new Point(px,py);
+				cropped.sizes[i] = j+1;
+			}
+		}
+		return cropped;
+	}
+
+
 	/**
 	 * Get the size of a stack
 	 * @param stack Stack index
@@ -1,6 +1,11 @@
 package motionvdl.model.data;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
 import motionvdl.Debug;
+import motionvdl.model.FileSystem;
 
 /**
  * Immutable container for video and label data
@@ -39,6 +44,57 @@ public class LabeledVideo extends Encoding {
 		Debug.trace("Created LabelledVideo");
 	}
 
+	/**
+	 * Construct labeled video from existing components
+	 * @param video Video instance to contain
+	 * @param label Label instance to contain
+	 * @throws IllegalArgumentException Label length does not match video length
+	 */
+	public LabeledVideo(Video video, Label label) throws IllegalArgumentException {
+		
+		// throw exceptions
+		if (video.length != label.length) throw new IllegalArgumentException(String.format("LabeledVideo error: label length %d does not match video length %d",label.length,video.length));
+		
+		// setup components
+		this.video = video;
+		this.label = label;
+		
+		// debug trace
+		Debug.trace("Created LabelledVideo");
+	}
+	
+	/**
+	 * Construct model from encoded file, memory mapping the video component
+	 * so frames are only read from the file when requested
+	 * @param location Filesystem location
+	 * @throws IOException Problem accessing filesystem
+	 * @throws IllegalArgumentException Malformed file
+	 */
+	public LabeledVideo(String location) throws IOException, IllegalArgumentException {
+		
+		// read metadata
+		byte[] metadata = FileSystem.readBytes(location, 0, 6);
+		int length = (metadata[0] & 0xFF)*256+(metadata[1] & 0xFF);
+		int height = (metadata[2] & 0xFF)*256+(metadata[3] & 0xFF);
+		int width  = (metadata[4] & 0xFF)*256+(metadata[5] & 0xFF);
+		
+		// decode volume
+		long videoVolume = 6 + (long) length*height*width;
+		long labelVolume = FileSystem.getSize(location) - videoVolume;
+		if (labelVolume < 0 || labelVolume > Integer.MAX_VALUE) throw new IllegalArgumentException("LabeledVideo error: malformed file");
+		
+		// map video and decode label
+		try {
+			video = new Video(new MappedFrameStore(location, 6, width, height, length));
+		} catch (ArrayIndexOutOfBoundsException e) {
+			throw new IllegalArgumentException("LabeledVideo error: "+e.getMessage());
+		}
+		label = new Label(FileSystem.readBytes(location, videoVolume, (int) labelVolume));
+		
+		// debug trace
+		Debug.trace("Created LabelledVideo from mapped file");
+	}
+
 	/**
 	 * Construct model from byte sequence
 	 * @param encoding Byte sequence
@@ -59,10 +115,8 @@ public class LabeledVideo extends Encoding {
 		int labelVolume = encoding.length - videoVolume;
 
 		// split encoding
-		byte[] videoEncoding = new byte[videoVolume];
-		byte[] labelEncoding = new byte[labelVolume];
-		for (int i=0; i < videoVolume; i++) {videoEncoding[i] = encoding[i];}
-		for (int i=0; i < labelVolume; i++) {labelEncoding[i] = encoding[videoVolume+i];}
+		byte[] videoEncoding = Arrays.copyOfRange(encoding, 0, videoVolume);
+		byte[] labelEncoding = Arrays.copyOfRange(encoding, videoVolume, encoding.length);
 
 		// decode components
 		video = new Video(videoEncoding);
@@ -74,7 +128,68 @@ public class LabeledVideo extends Encoding {
 	
 	
 	/**
-	 * Process labelled video by cropping to square, scaling to target resolution, then greyscaling video. Resets label component.
+	 * Create seeded synthetic labelled video of a stick figure moving across a noisy
+	 * background, labelled with the true position of every figure node. Frames are
+	 * rendered when read, so any length and resolution can be generated
+	 * @param width Resolution width
+	 * @param height Resolution height
+	 * @param length Length of video in frames
+	 * @param seed Random seed
+	 * @return Synthetic labelled video
+	 */
+	public static LabeledVideo synthetic(int width, int height, int length, long seed) {
+
+		// debug trace
+		Debug.trace(String.format("Created (%d,%d,%d) synthetic labelled video",length,height,width));
+
+		// setup frames
+		SyntheticFrameStore store = new SyntheticFrameStore(width, height, length, seed);
+
+		// label the nodes of each frame in parallel, each frame fills only its own stack
+		Label label = new Label(length, NODE_COUNT);
+		FramePool.forEach(length, i -> {
+			double[] nodes = store.getNodes(i);
+			for (int node=0; node < NODE_COUNT; node++) {
+				double x = Math.min(Math.max(nodes[2*node] / width, 0), 1);
+				double y = Math.min(Math.max(nodes[2*node+1] / height, 0), 1);
+				label.push(i, x, y);
+			}
+		});
+
+		return new LabeledVideo(new Video(store), label);
+	}
+
+
+	/**
+	 * Release the video component, the labeled video must not be used afterwards
+	 */
+	public void release() {
+		video.release();
+	}
+	
+	
+	/**
+	 * Select every stride-th frame of a range of the labelled video. Video frames are
+	 * shared with this instance, the label is a copy
+	 * @param start Index of the first frame
+	 * @param end Index after the last frame
+	 * @param stride Frames between consecutive selected frames
+	 * @return Trimmed instance, this instance when every frame is selected
+	 * @throws IllegalArgumentException Invalid range or stride
+	 */
+	public LabeledVideo getTrimmed(int start, int end, int stride) throws IllegalArgumentException {
+		
+		// return unchanged instance
+		Video trimmed = video.getTrimmed(start, end, stride);
+		if (trimmed == video) return this;
+		
+		// trim video and label
+		return new LabeledVideo(trimmed, label.getTrimmed(start, end, stride));
+	}
+	
+	
+	/**
+	 * Process labelled video by cropping to square, scaling to target resolution, then greyscaling video in a single pass. Label points are mapped into the crop region.
 	 * @param x Top left x coordinate of the square crop region
 	 * @param y Top left y coordinate of the square crop region
 	 * @param crop Width and height of the square crop region
@@ -82,7 +197,100 @@ public class LabeledVideo extends Encoding {
 	 * @return Processed instance
 	 */
 	public LabeledVideo getProcessed(int x, int y, int crop, int target) throws IllegalArgumentException {
-		return new LabeledVideo(video.getCropped(x,y,crop,crop).getScaled(target,target).getGreyscaled());
+		return getProcessed(x, y, crop, target, Resampler.Filter.AREA);
+	}
+	
+	/**
+	 * Process labelled video by cropping to square, scaling to target resolution with the given filter, then greyscaling video in a single pass. Label points are mapped into the crop region.
+	 * @param x Top left x coordinate of the square crop region
+	 * @param y Top left y coordinate of the square crop region
+	 * @param crop Width and height of the square crop region
+	 * @param target Scale target resolution width and height
+	 * @param filter Resampling filter
+	 * @return Processed instance
+	 */
+	public LabeledVideo getProcessed(int x, int y, int crop, int target, Resampler.Filter filter) throws IllegalArgumentException {
+		return new LabeledVideo(video.getProcessed(x,y,crop,crop,target,target,filter), label.getCropped(x,y,crop,video.width,video.height));
+	}
+	
+	/**
+	 * Process labelled video by a pipeline of frame operations, reading each source frame once. Resets label component.
+	 * @param pipeline Frame operations
+	 * @return Processed instance
+	 * @throws IllegalArgumentException Crop region outside the frame at its stage
+	 */
+	public LabeledVideo getProcessed(Pipeline pipeline) throws IllegalArgumentException {
+		return new LabeledVideo(video.getProcessed(pipeline));
+	}
+	
+	
+	/**
+	 * Process labelled video by cropping to square once, then scaling to several target resolutions
+	 * and greyscaling in a single pass. Each resolution is derived from the one before it, and every
+	 * instance shares one label mapped into the crop region so points placed on any of them apply to all
+	 * @param x Top left x coordinate of the square crop region
+	 * @param y Top left y coordinate of the square crop region
+	 * @param crop Width and height of the square crop region
+	 * @param targets Scale target resolutions, largest first
+	 * @param filter Resampling filter
+	 * @return Processed instance of each target resolution
+	 * @throws IllegalArgumentException Invalid crop region or target resolutions
+	 */
+	public LabeledVideo[] getPyramid(int x, int y, int crop, int[] targets, Resampler.Filter filter) throws IllegalArgumentException {
+		Video[] levels = video.getPyramid(x, y, crop, crop, targets, targets, filter);
+		return getShared(levels, label.getCropped(x, y, crop, video.width, video.height));
+	}
+	
+	/**
+	 * Scale labelled video to several smaller square resolutions in a single pass, each derived
+	 * from the one before it. Every instance shares the label of this instance
+	 * @param targets Scale target resolutions, largest first
+	 * @param filter Resampling filter
+	 * @return Scaled instance of each target resolution
+	 * @throws IllegalArgumentException Invalid target resolutions
+	 */
+	public LabeledVideo[] getPyramid(int[] targets, Resampler.Filter filter) throws IllegalArgumentException {
+		Video[] levels = video.getPyramid(0, 0, video.width, video.height, targets, targets, filter);
+		return getShared(levels, label);
+	}
+	
+	// wrap videos with a shared label
+	private static LabeledVideo[] getShared(Video[] levels, Label label) {
+		LabeledVideo[] pyramid = new LabeledVideo[levels.length];
+		for (int k=0; k < levels.length; k++) {
+			pyramid[k] = new LabeledVideo(levels[k], label);
+		}
+		return pyramid;
+	}
+	
+	
+	/**
+	 * Check if the video and label dimensions fit the byte encoding value limits
+	 * @return Result
+	 */
+	public boolean checkEncodable() {
+		return video.checkEncodable() && label.capacity <= EIGHT_BIT_LIMIT;
+	}
+	
+	
+	/**
+	 * Write video and label encodings to output stream, streaming the video one frame at a time
+	 * @param output Output stream
+	 * @throws IOException Problem writing to the stream
+	 * @throws ArrayIndexOutOfBoundsException Exceeding value limits
+	 */
+	@Override
+	public void write(OutputStream output) throws IOException, ArrayIndexOutOfBoundsException {
+		
+		// encode label first so value limits are checked before any bytes are written
+		byte[] encodedLabel = label.getEncoding();
+		
+		// write video and label
+		video.write(output);
+		output.write(encodedLabel);
+		
+		// debug trace
+		Debug.trace("LabelledVideo: written as byte sequence");
 	}
 	
 	
@@ -0,0 +1,173 @@
+package motionvdl.model.data;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import motionvdl.Debug;
+import motionvdl.model.FileSystem;
+
+/**
+ * Frame store that keeps only the image file of each frame and decodes
+ * frames on access through a least recently used cache bounded in bytes
+ * @author Joseph
+ */
+public class LazyFrameStore extends FrameStore {
+
+	// frame sources and decoded region as x, y, width, height, step, null for whole frames
+	private final File[] sources;
+	private final int[] region;
+
+	// frame cache
+	public final long budget;  // bytes of decoded frames held in the cache
+	public final int capacity; // decoded frames held in the cache
+	private final LinkedHashMap<Integer, BufferedImage> cache;
+
+	/**
+	 * Construct store from image files, the first frame determines the resolution
+	 * @param sources Frame image files in frame order
+	 * @param budget Maximum bytes of decoded frames held in the cache, at least one frame is always held
+	 * @throws IOException Problem reading the first frame
+	 * @throws ArrayIndexOutOfBoundsException No frames or cache budget less than 1
+	 */
+	public LazyFrameStore(File[] sources, long budget) throws IOException, ArrayIndexOutOfBoundsException {
+		this(sources, budget, null, sources.length > 0 ? FileSystem.readImage(sources[0]) : null);
+	}
+
+	// construct with the decoded region and first frame
+	private LazyFrameStore(File[] sources, long budget, int[] region, BufferedImage first) {
+
+		// setup metadata
+		super(
+			first != null ? first.getWidth() : 0,
+			first != null ? first.getHeight() : 0,
+			sources.length);
+
+		// throw exceptions
+		if (budget < 1) throw new ArrayIndexOutOfBoundsException(String.format("LazyFrameStore error: invalid cache budget '%d'",budget));
+
+		// setup sources
+		this.sources = sources;
+		this.region = region;
+
+		// setup access ordered cache that evicts the least recently used frame, sized by the bytes of a decoded frame
+		this.budget = budget;
+		this.capacity = (int) Math.max(1, Math.min(length, budget / getBytes(first)));
+		this.cache = new LinkedHashMap<Integer, BufferedImage>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, BufferedImage> eldest) {
+				return size() > LazyFrameStore.this.capacity;
+			}
+		};
+		cache.put(0, first);
+
+		// debug trace
+		Debug.trace(String.format("Created (%d,%d,%d) lazy frame store with cache capacity %d",length,height,width,capacity));
+	}
+
+
+	/**
+	 * Determine the bytes held by a decoded image
+	 * @param image Decoded image
+	 * @return Bytes of the image raster
+	 */
+	static long getBytes(BufferedImage image) {
+		DataBuffer buffer = image.getRaster().getDataBuffer();
+		return Math.max(1, (long) buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8);
+	}
+
+
+	/**
+	 * Get store of a region of each frame decoded at reduced resolution, so only the pixels of
+	 * the region are decoded and every step-th pixel along each axis is kept. Regions of a
+	 * region store are decoded from the original files
+	 * @param x Top left x coordinate of the region
+	 * @param y Top left y coordinate of the region
+	 * @param w Width of the region
+	 * @param h Height of the region
+	 * @param step Pixels between consecutive decoded pixels
+	 * @return Store of ceil(w/step) by ceil(h/step) frames with the same cache budget
+	 * @throws IOException Problem reading the first frame
+	 * @throws IllegalArgumentException Region outside the frames or step less than 1
+	 */
+	public LazyFrameStore getRegion(int x, int y, int w, int h, int step) throws IOException, IllegalArgumentException {
+
+		// throw invalid parameters
+		if (0 > x || 0 > y || w < 1 || h < 1 || x+w > width || y+h > height || step < 1) throw new IllegalArgumentException(String.format("LazyFrameStore error: invalid region %dx%d from (%d,%d) by %d",w,h,x,y,step));
+
+		// determine region of the original files
+		int[] decoded = new int[] {x, y, w, h, step};
+		if (region != null) {
+			decoded[0] = region[0] + x*region[4];
+			decoded[1] = region[1] + y*region[4];
+			decoded[2] = Math.min(w*region[4], region[0]+region[2] - decoded[0]);
+			decoded[3] = Math.min(h*region[4], region[1]+region[3] - decoded[1]);
+			decoded[4] = step*region[4];
+		}
+
+		// debug trace
+		Debug.trace(String.format("LazyFrameStore: decoding %dx%d region from (%d,%d) by %d",decoded[2],decoded[3],decoded[0],decoded[1],decoded[4]));
+
+		return new LazyFrameStore(sources, budget, decoded, decode(sources[0], decoded));
+	}
+
+
+	/**
+	 * Decode a frame, or a region of it at reduced resolution
+	 */
+	private static BufferedImage decode(File source, int[] region) throws IOException {
+		if (region == null) return FileSystem.readImage(source);
+		return FileSystem.readImage(source, region[0], region[1], region[2], region[3], region[4]);
+	}
+
+
+	/**
+	 * Get frame by index, decoding it when it is not cached
+	 * @param index Index of the frame
+	 * @return Image of frame
+	 * @throws UncheckedIOException Problem reading the frame
+	 */
+	@Override
+	public BufferedImage getFrame(int index) throws UncheckedIOException {
+
+		// return cached frame
+		synchronized (cache) {
+			BufferedImage frame = cache.get(index);
+			if (frame != null) return frame;
+		}
+
+		// decode frame outside the lock so other frames can be served meanwhile
+		BufferedImage frame;
+		try {
+			frame = decode(sources[index], region);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		// throw frames that do not match the video resolution
+		if (frame.getWidth() != width || frame.getHeight() != height) throw new UncheckedIOException(new IOException(String.format("LazyFrameStore error: frame %d has resolution %dx%d, expected %dx%d",index,frame.getWidth(),frame.getHeight(),width,height)));
+
+		// cache frame
+		synchronized (cache) {
+			cache.put(index, frame);
+		}
+
+		// return frame
+		return frame;
+	}
+
+
+	/**
+	 * Release the cached frames
+	 */
+	@Override
+	public void release() {
+		synchronized (cache) {
+			cache.clear();
+		}
+	}
+}
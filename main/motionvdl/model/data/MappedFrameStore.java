@@ -0,0 +1,102 @@
+package motionvdl.model.data;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+
+import motionvdl.Debug;
+import motionvdl.model.FileSystem;
+
+/**
+ * Read only greyscale frame store backed by a memory mapped file region.
+ * Frames are copied out of the mapping only when requested
+ * @author Joseph
+ */
+public class MappedFrameStore extends GreyFrameStore {
+
+	// mapping layout
+	private final int volume;             // bytes per frame
+	private final int framesPerChunk;     // whole frames per mapped chunk
+	private final MappedByteBuffer[] chunks;
+
+	/**
+	 * Map greyscale frames stored contiguously in a file
+	 * @param location Filesystem location
+	 * @param offset Position of the first frame byte
+	 * @param width Frame width
+	 * @param height Frame height
+	 * @param length Number of frames
+	 * @throws IOException Problem accessing filesystem or file too short
+	 * @throws ArrayIndexOutOfBoundsException Dimensions less than 1
+	 */
+	public MappedFrameStore(String location, long offset, int width, int height, int length) throws IOException, ArrayIndexOutOfBoundsException {
+		super(width, height, length);
+
+		// determine layout, each mapping holds as many whole frames as fit in 2GB
+		volume = width*height;
+		framesPerChunk = Math.max(1, Integer.MAX_VALUE / volume);
+		chunks = new MappedByteBuffer[(length + framesPerChunk - 1) / framesPerChunk];
+
+		// map chunks
+		for (int i=0; i < chunks.length; i++) {
+			int frames = Math.min(framesPerChunk, length - i*framesPerChunk);
+			chunks[i] = FileSystem.mapBytes(location, offset + (long) i*framesPerChunk*volume, (long) frames*volume);
+		}
+
+		// debug trace
+		Debug.trace(String.format("Created (%d,%d,%d) mapped frame store over %d chunks of '%s'",length,height,width,chunks.length,location));
+	}
+
+
+	/**
+	 * Read frame greyscale bytes in row major order
+	 * @param index Index of the frame
+	 * @param grey Destination array
+	 * @param offset Offset into the destination array
+	 */
+	@Override
+	public void readGrey(int index, byte[] grey, int offset) {
+		chunks[index / framesPerChunk].get((index % framesPerChunk) * volume, grey, offset, volume);
+	}
+
+
+	/**
+	 * Mapped frames are read only
+	 * @throws UnsupportedOperationException Always
+	 */
+	@Override
+	public void writeGrey(int index, byte[] grey, int offset) throws UnsupportedOperationException {
+		throw new UnsupportedOperationException("MappedFrameStore error: store is read only");
+	}
+
+
+	/**
+	 * Read rectangular region of frame as packed rgb pixels with equal color channels
+	 * @param index Index of the frame
+	 * @param x Top left x coordinate of the region
+	 * @param y Top left y coordinate of the region
+	 * @param w Width of the region
+	 * @param h Height of the region
+	 * @param pixels Destination array of at least w*h elements
+	 */
+	@Override
+	public void readRGB(int index, int x, int y, int w, int h, int[] pixels) {
+		MappedByteBuffer chunk = chunks[index / framesPerChunk];
+		int start = (index % framesPerChunk) * volume;
+		for (int j=0; j < h; j++) {
+			int row = start + (y+j)*width + x;
+			for (int k=0; k < w; k++) {
+				pixels[j*w+k] = (chunk.get(row+k) & 0xFF) * 0x010101;
+			}
+		}
+	}
+
+
+	/**
+	 * Regions are read from the frame rows they cover
+	 * @return True
+	 */
+	@Override
+	public boolean hasRegionReads() {
+		return true;
+	}
+}
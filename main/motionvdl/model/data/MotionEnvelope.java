@@ -0,0 +1,169 @@
+package motionvdl.model.data;
+
+import motionvdl.Debug;
+
+/**
+ * Collection of static methods for locating the region of a video that contains
+ * motion. Analysis runs on an evenly spaced sample of frames downscaled to a small
+ * resolution, so the cost is bounded regardless of the video length and resolution
+ * @author Joseph
+ */
+public final class MotionEnvelope {
+
+	// constants
+	public static final int SAMPLE_FRAMES = 256;     // most frames sampled
+	public static final int SAMPLE_RESOLUTION = 128; // longest side of the sampled frames
+	public static final int THRESHOLD = 24;          // grey level difference counted as motion
+	private static final double TAIL = 0.005;        // fraction of motion ignored at each edge as noise
+	private static final double MARGIN = 0.1;        // fraction of the envelope added around the suggested crop
+
+	// uninstantiable object
+	private MotionEnvelope() {}
+
+
+	/**
+	 * Determine the bounding box of the motion between consecutive sampled frames
+	 * @param video Video
+	 * @return Bounding box as x, y, width, height, null when no motion is found
+	 */
+	public static int[] getBounds(Video video) {
+		return getBounds(video, SAMPLE_FRAMES);
+	}
+
+	/**
+	 * Determine the bounding box of the motion between consecutive frames of an evenly
+	 * spaced sample of the given size
+	 * @param video Video
+	 * @param count Most frames sampled
+	 * @return Bounding box as x, y, width, height, null when no motion is found
+	 * @throws IllegalArgumentException Sample size less than 1
+	 */
+	public static int[] getBounds(Video video, int count) throws IllegalArgumentException {
+
+		// throw invalid parameters
+		if (count < 1) throw new IllegalArgumentException(String.format("MotionEnvelope error: invalid sample size '%d'",count));
+
+		// determine sampled frames and resolution
+		int samples = Math.min(video.length, count);
+		int factor = Math.max(1, (Math.max(video.width, video.height) + SAMPLE_RESOLUTION-1) / SAMPLE_RESOLUTION);
+		int sw = Math.max(1, video.width / factor);
+		int sh = Math.max(1, video.height / factor);
+
+		// debug trace
+		Debug.trace(String.format("MotionEnvelope: sampling %d frames at %dx%d",samples,sw,sh));
+
+		// downscale each sampled frame to greyscale in parallel
+		byte[][] frames = new byte[samples][];
+		FramePool.forEach(samples, k -> {
+			int index = (samples > 1) ? (int) ((long) k*(video.length-1) / (samples-1)) : 0;
+			int[] pixels = new int[sw*sh];
+			video.resampleFrame(index, 0, 0, video.width, video.height, Resampler.Filter.AREA, pixels, sw, sh);
+			frames[k] = new byte[sw*sh];
+			Greyscale.convert(Greyscale.Formula.MEAN, pixels, frames[k], 0, sw*sh);
+		});
+
+		// count moving pixels of each column and row per consecutive pair in parallel
+		int pairs = samples-1;
+		long[][] cols = new long[Math.max(pairs, 0)][];
+		long[][] rows = new long[Math.max(pairs, 0)][];
+		FramePool.forEach(pairs, k -> {
+			cols[k] = new long[sw];
+			rows[k] = new long[sh];
+			for (int j=0; j < sh; j++) {
+				for (int i=0; i < sw; i++) {
+					int p = j*sw+i;
+					if (Math.abs((frames[k][p] & 0xFF) - (frames[k+1][p] & 0xFF)) > THRESHOLD) {
+						cols[k][i]++;
+						rows[k][j]++;
+					}
+				}
+			}
+		});
+
+		// reduce the counts of every pair
+		long[] colTotals = new long[sw];
+		long[] rowTotals = new long[sh];
+		for (int k=0; k < pairs; k++) {
+			for (int i=0; i < sw; i++) colTotals[i] += cols[k][i];
+			for (int j=0; j < sh; j++) rowTotals[j] += rows[k][j];
+		}
+
+		// determine the span of each axis holding all but the noise tails of the motion
+		int[] xSpan = getSpan(colTotals);
+		int[] ySpan = getSpan(rowTotals);
+		if (xSpan == null || ySpan == null) {
+			Debug.trace("MotionEnvelope: no motion found");
+			return null;
+		}
+
+		// scale span back to the video resolution
+		int x0 = Math.min(xSpan[0]*video.width / sw, video.width-1);
+		int y0 = Math.min(ySpan[0]*video.height / sh, video.height-1);
+		int x1 = Math.max(Math.min((xSpan[1]+1)*video.width / sw, video.width), x0+1);
+		int y1 = Math.max(Math.min((ySpan[1]+1)*video.height / sh, video.height), y0+1);
+		Debug.trace(String.format("MotionEnvelope: motion within %dx%d from (%d,%d)",x1-x0,y1-y0,x0,y0));
+		return new int[] {x0, y0, x1-x0, y1-y0};
+	}
+
+
+	/**
+	 * Suggest a square crop that keeps the motion of the video in frame, centred on
+	 * the motion bounding box with a margin, or the largest centred square when no
+	 * motion is found
+	 * @param video Video
+	 * @return Square crop as x, y, size
+	 */
+	public static int[] suggestCrop(Video video) {
+		return suggestCrop(video, SAMPLE_FRAMES);
+	}
+
+	/**
+	 * Suggest a square crop from an evenly spaced sample of the given size, so the cost
+	 * is a fixed number of frame reads however long the video is
+	 * @param video Video
+	 * @param count Most frames sampled
+	 * @return Square crop as x, y, size
+	 * @throws IllegalArgumentException Sample size less than 1
+	 */
+	public static int[] suggestCrop(Video video, int count) throws IllegalArgumentException {
+
+		// determine crop size
+		int limit = Math.min(video.width, video.height);
+		int[] bounds = getBounds(video, count);
+		int size = limit;
+		int cx = video.width / 2;
+		int cy = video.height / 2;
+		if (bounds != null) {
+			size = (int) Math.min(limit, Math.ceil(Math.max(bounds[2], bounds[3]) * (1+MARGIN)));
+			cx = bounds[0] + bounds[2] / 2;
+			cy = bounds[1] + bounds[3] / 2;
+		}
+
+		// centre crop, keeping it inside the frame
+		int x = Math.min(Math.max(cx - size/2, 0), video.width - size);
+		int y = Math.min(Math.max(cy - size/2, 0), video.height - size);
+		return new int[] {x, y, size};
+	}
+
+
+	/**
+	 * Determine the first and last index holding all but the tails of the total count
+	 * @param counts Counts
+	 * @return First and last index, null when every count is zero
+	 */
+	private static int[] getSpan(long[] counts) {
+
+		// determine total
+		long total = 0;
+		for (long count : counts) total += count;
+		if (total == 0) return null;
+
+		// skip the tail at each end
+		long tail = (long) (total * TAIL);
+		int first = 0;
+		for (long sum = counts[0]; sum <= tail; sum += counts[++first]);
+		int last = counts.length-1;
+		for (long sum = counts[last]; sum <= tail; sum += counts[--last]);
+		return new int[] {first, Math.max(first, last)};
+	}
+}
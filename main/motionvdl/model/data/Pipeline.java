@@ -0,0 +1,378 @@
+package motionvdl.model.data;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import motionvdl.Debug;
+
+/**
+ * Chain of frame operations applied to a video. Stages are fused so every frame is
+ * read once and carried through each crop, scale and greyscale stage in memory, with
+ * frames processed in parallel. Contrast stages are point operations on the greyscale
+ * output, so every contrast stage is folded into a single lookup table derived from one
+ * histogram of the output and applied in a second pass over the output frames
+ * @author Joseph
+ */
+public class Pipeline {
+
+	/**
+	 * Frame operations
+	 */
+	private enum Operation {
+		CROP,      // rectangular region
+		SCALE,     // resample to a resolution
+		GREYSCALE, // convert to greyscale
+		NORMALISE, // stretch the grey levels in use to the full range
+		EQUALISE;  // flatten the grey level histogram
+	}
+
+	// frame operation and its parameters
+	private static class Stage {
+		final Operation operation;
+		final int x, y, w, h;
+		final Resampler.Filter filter;
+		final Greyscale.Formula formula;
+		Stage(Operation operation, int x, int y, int w, int h, Resampler.Filter filter, Greyscale.Formula formula) {
+			this.operation = operation;
+			this.x = x;
+			this.y = y;
+			this.w = w;
+			this.h = h;
+			this.filter = filter;
+			this.formula = formula;
+		}
+	}
+
+	// stages in order
+	private final List<Stage> stages = new ArrayList<>();
+
+	/**
+	 * Construct empty pipeline
+	 */
+	public Pipeline() {}
+
+
+	/**
+	 * Add crop stage
+	 * @param x Top left x coordinate of the rectangular region
+	 * @param y Top left y coordinate of the rectangular region
+	 * @param w Width of the rectangular region
+	 * @param h Height of the rectangular region
+	 * @return This pipeline
+	 * @throws IllegalStateException Added after a contrast stage
+	 */
+	public Pipeline crop(int x, int y, int w, int h) throws IllegalStateException {
+		return add(new Stage(Operation.CROP, x, y, w, h, null, null));
+	}
+
+
+	/**
+	 * Add scale stage
+	 * @param w Target resolution width
+	 * @param h Target resolution height
+	 * @param filter Resampling filter
+	 * @return This pipeline
+	 * @throws IllegalArgumentException Invalid scale resolution
+	 * @throws IllegalStateException Added after a contrast stage
+	 */
+	public Pipeline scale(int w, int h, Resampler.Filter filter) throws IllegalArgumentException, IllegalStateException {
+		if (w < 1 || h < 1) throw new IllegalArgumentException(String.format("Pipeline error: invalid scale resolution '%dx%d'",w,h));
+		return add(new Stage(Operation.SCALE, 0, 0, w, h, filter, null));
+	}
+
+
+	/**
+	 * Add greyscale stage
+	 * @param formula Greyscale conversion formula
+	 * @return This pipeline
+	 * @throws IllegalStateException Added after a contrast stage
+	 */
+	public Pipeline greyscale(Greyscale.Formula formula) throws IllegalStateException {
+		return add(new Stage(Operation.GREYSCALE, 0, 0, 0, 0, null, formula));
+	}
+
+
+	/**
+	 * Add contrast normalisation stage, linearly stretching the lowest and highest grey
+	 * levels of the whole video to black and white
+	 * @return This pipeline
+	 * @throws IllegalStateException Added before a greyscale stage
+	 */
+	public Pipeline normalise() throws IllegalStateException {
+		return add(new Stage(Operation.NORMALISE, 0, 0, 0, 0, null, null));
+	}
+
+
+	/**
+	 * Add histogram equalisation stage, mapping grey levels through the cumulative
+	 * histogram of the whole video so they spread evenly over the full range
+	 * @return This pipeline
+	 * @throws IllegalStateException Added before a greyscale stage
+	 */
+	public Pipeline equalise() throws IllegalStateException {
+		return add(new Stage(Operation.EQUALISE, 0, 0, 0, 0, null, null));
+	}
+
+
+	/**
+	 * Add stage, keeping contrast stages after every other stage
+	 * @param stage Stage
+	 * @return This pipeline
+	 * @throws IllegalStateException Stage out of order
+	 */
+	private Pipeline add(Stage stage) throws IllegalStateException {
+
+		// determine the kinds of stage already added
+		boolean grey = false;
+		boolean contrast = false;
+		for (Stage added : stages) {
+			grey |= added.operation == Operation.GREYSCALE;
+			contrast |= isContrast(added.operation);
+		}
+
+		// throw stages out of order
+		if (isContrast(stage.operation) && !grey) throw new IllegalStateException(String.format("Pipeline error: %s stage must follow a greyscale stage",stage.operation));
+		if (!isContrast(stage.operation) && contrast) throw new IllegalStateException(String.format("Pipeline error: %s stage cannot follow a contrast stage",stage.operation));
+
+		// add stage
+		stages.add(stage);
+		return this;
+	}
+
+	// check if an operation is a contrast stage
+	private static boolean isContrast(Operation operation) {
+		return operation == Operation.NORMALISE || operation == Operation.EQUALISE;
+	}
+
+
+	/**
+	 * Apply every stage to a video
+	 * @param video Source video
+	 * @return Processed video, greyscale when the pipeline has a greyscale stage
+	 * @throws IllegalArgumentException Crop region outside the frame at its stage
+	 */
+	public Video apply(Video video) throws IllegalArgumentException {
+
+		// fold leading crops into a single source region
+		int first = 0;
+		int rx = 0, ry = 0, rw = video.width, rh = video.height;
+		while (first < stages.size() && stages.get(first).operation == Operation.CROP) {
+			Stage crop = stages.get(first++);
+			checkCrop(crop, rw, rh);
+			rx += crop.x;
+			ry += crop.y;
+			rw = crop.w;
+			rh = crop.h;
+		}
+
+		// determine output resolution and check every later crop
+		int w = rw, h = rh;
+		boolean grey = false;
+		for (int s=first; s < stages.size(); s++) {
+			Stage stage = stages.get(s);
+			switch (stage.operation) {
+				case CROP      -> {checkCrop(stage, w, h); w = stage.w; h = stage.h;}
+				case SCALE     -> {w = stage.w; h = stage.h;}
+				case GREYSCALE -> grey = true;
+				default        -> {}
+			}
+		}
+		final int ow = w, oh = h;
+		final boolean greyOutput = grey;
+
+		// debug trace
+		Debug.trace(String.format("Pipeline: applying %d stages from %dx%d to %dx%d %s",stages.size(),video.width,video.height,ow,oh,grey ? "greyscale" : "rgb"));
+
+		// initialise output
+		GreyFrameStore greyStore = grey ? GreyFrameStore.allocate(ow, oh, video.length) : null;
+		BufferedImage[] imageBuffer = grey ? null : new BufferedImage[video.length];
+		AtomicLongArray histogram = new AtomicLongArray(256);
+
+		// carry each frame through the stages in a single pass
+		final int sx = rx, sy = ry, sw = rw, sh = rh, start = first;
+		FramePool.forEach(video.length, i -> {
+
+			// read source region, resampling straight from the source when a scale stage follows the crops
+			int s = start;
+			int cw = sw, ch = sh;
+			int[] pixels;
+			if (s < stages.size() && stages.get(s).operation == Operation.SCALE) {
+				Stage scale = stages.get(s++);
+				pixels = new int[scale.w*scale.h];
+				video.resampleFrame(i, sx, sy, sw, sh, scale.filter, pixels, scale.w, scale.h);
+				cw = scale.w;
+				ch = scale.h;
+			} else {
+				pixels = new int[sw*sh];
+				video.getStore().readRGB(i, sx, sy, sw, sh, pixels);
+			}
+
+			// apply the remaining geometric and greyscale stages in memory
+			byte[] bytes = null;
+			for (; s < stages.size(); s++) {
+				Stage stage = stages.get(s);
+				switch (stage.operation) {
+					case CROP -> {
+						int[] cropped = new int[stage.w*stage.h];
+						for (int j=0; j < stage.h; j++) System.arraycopy(pixels, (stage.y+j)*cw + stage.x, cropped, j*stage.w, stage.w);
+						pixels = cropped;
+						cw = stage.w;
+						ch = stage.h;
+					}
+					case SCALE -> {
+						int[] scaled = new int[stage.w*stage.h];
+						Resampler.resample(stage.filter, pixels, cw, ch, scaled, stage.w, stage.h);
+						pixels = scaled;
+						cw = stage.w;
+						ch = stage.h;
+					}
+					case GREYSCALE -> {
+						bytes = new byte[cw*ch];
+						Greyscale.convert(stage.formula, pixels, bytes, 0, bytes.length);
+						for (int p=0; p < bytes.length; p++) pixels[p] = (bytes[p] & 0xFF) * 0x010101;
+					}
+					default -> {}
+				}
+			}
+
+			// write rgb frame
+			if (!greyOutput) {
+				imageBuffer[i] = new BufferedImage(cw, ch, BufferedImage.TYPE_INT_RGB);
+				System.arraycopy(pixels, 0, ((DataBufferInt) imageBuffer[i].getRaster().getDataBuffer()).getData(), 0, cw*ch);
+				return;
+			}
+
+			// write greyscale frame, taking the grey levels from the pixels in case of later geometric stages
+			if (bytes == null || bytes.length != cw*ch) bytes = new byte[cw*ch];
+			int[] counts = new int[256];
+			for (int p=0; p < bytes.length; p++) {
+				bytes[p] = (byte) pixels[p];
+				counts[pixels[p] & 0xFF]++;
+			}
+			greyStore.writeGrey(i, bytes, 0);
+			for (int v=0; v < 256; v++) {
+				if (counts[v] > 0) histogram.addAndGet(v, counts[v]);
+			}
+		});
+
+		// return rgb output
+		if (!grey) return new Video(imageBuffer);
+
+		// fold contrast stages into one lookup table and apply it in a second pass
+		byte[] table = getTable(histogram);
+		if (table != null) {
+			FramePool.forEach(video.length, i -> {
+				byte[] bytes = new byte[ow*oh];
+				greyStore.readGrey(i, bytes, 0);
+				for (int p=0; p < bytes.length; p++) bytes[p] = table[bytes[p] & 0xFF];
+				greyStore.writeGrey(i, bytes, 0);
+			});
+		}
+
+		// return greyscale output
+		return new Video(greyStore);
+	}
+
+
+	/**
+	 * Throw crop regions outside the frame
+	 */
+	private static void checkCrop(Stage crop, int w, int h) throws IllegalArgumentException {
+		if (0 > crop.x || crop.x >= w || 0 > crop.y || crop.y >= h) throw new IllegalArgumentException(String.format("Pipeline error: invalid crop coordinate '(%d,%d)'",crop.x,crop.y));
+		if (1 > crop.w || crop.w > w-crop.x || 1 > crop.h || crop.h > h-crop.y) throw new IllegalArgumentException(String.format("Pipeline error: invalid crop resolution '%dx%d'",crop.w,crop.h));
+	}
+
+
+	/**
+	 * Compose the contrast stages into a single grey level lookup table. Each stage is
+	 * derived from the histogram left by the stages before it, which follows from the
+	 * output histogram without reading the frames again
+	 * @param histogram Grey level histogram of the output before contrast stages
+	 * @return Lookup table, null when there are no contrast stages
+	 */
+	private byte[] getTable(AtomicLongArray histogram) {
+
+		// setup identity table and current histogram
+		int[] table = new int[256];
+		long[] counts = new long[256];
+		for (int v=0; v < 256; v++) {
+			table[v] = v;
+			counts[v] = histogram.get(v);
+		}
+
+		// compose each contrast stage
+		boolean contrast = false;
+		for (Stage stage : stages) {
+			if (!isContrast(stage.operation)) continue;
+			contrast = true;
+			int[] map = (stage.operation == Operation.NORMALISE) ? getNormalised(counts) : getEqualised(counts);
+
+			// remap table and histogram
+			long[] mapped = new long[256];
+			for (int v=0; v < 256; v++) {
+				table[v] = map[table[v]];
+				mapped[map[v]] += counts[v];
+			}
+			counts = mapped;
+		}
+		if (!contrast) return null;
+
+		// debug trace
+		Debug.trace("Pipeline: contrast stages folded into a single lookup table");
+
+		// return byte table
+		byte[] bytes = new byte[256];
+		for (int v=0; v < 256; v++) bytes[v] = (byte) table[v];
+		return bytes;
+	}
+
+
+	/**
+	 * Linear stretch of the lowest and highest grey levels in use to 0 and 255
+	 */
+	private static int[] getNormalised(long[] counts) {
+
+		// determine grey levels in use
+		int low = 0, high = 255;
+		while (low < 255 && counts[low] == 0) low++;
+		while (high > 0 && counts[high] == 0) high--;
+
+		// determine mapping, identity when fewer than two levels are in use
+		int[] map = new int[256];
+		for (int v=0; v < 256; v++) {
+			if (high <= low) map[v] = v;
+			else map[v] = (int) Math.round(Math.min(Math.max(v-low, 0), high-low) * 255.0 / (high-low));
+		}
+		return map;
+	}
+
+
+	/**
+	 * Histogram equalisation through the cumulative histogram, mapping the lowest level in use to 0
+	 */
+	private static int[] getEqualised(long[] counts) {
+
+		// determine cumulative histogram
+		long[] cdf = new long[256];
+		long total = 0;
+		for (int v=0; v < 256; v++) {
+			total += counts[v];
+			cdf[v] = total;
+		}
+
+		// determine the cumulative count of the lowest level in use
+		long min = 0;
+		for (int v=0; v < 256 && min == 0; v++) min = cdf[v];
+
+		// determine mapping, identity when fewer than two levels are in use
+		int[] map = new int[256];
+		for (int v=0; v < 256; v++) {
+			if (total == min) map[v] = v;
+			else map[v] = (int) Math.round(Math.max(cdf[v]-min, 0) * 255.0 / (total-min));
+		}
+		return map;
+	}
+}
@@ -0,0 +1,103 @@
+package motionvdl.model.data;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Frame store view of a range of frames of another store, taking every
+ * stride-th frame from the start of the range
+ * @author Joseph
+ */
+public class RangeFrameStore extends FrameStore {
+
+	// source store, range offset and step
+	private final FrameStore source;
+	private final int start;
+	private final int stride;
+
+	/**
+	 * Construct view of a contiguous range of frames of a source store
+	 * @param source Source store
+	 * @param start Index of the first source frame
+	 * @param length Number of frames
+	 * @throws IllegalArgumentException Range outside the source store
+	 */
+	public RangeFrameStore(FrameStore source, int start, int length) throws IllegalArgumentException {
+		this(source, start, length, 1);
+	}
+
+	/**
+	 * Construct view of every stride-th frame of a range of a source store
+	 * @param source Source store
+	 * @param start Index of the first source frame
+	 * @param length Number of frames
+	 * @param stride Source frames between consecutive frames
+	 * @throws IllegalArgumentException Range outside the source store or stride less than 1
+	 */
+	public RangeFrameStore(FrameStore source, int start, int length, int stride) throws IllegalArgumentException {
+		super(source.width, source.height, length);
+
+		// throw invalid parameters
+		if (stride < 1) throw new IllegalArgumentException(String.format("RangeFrameStore error: invalid stride '%d'",stride));
+		if (0 > start || start + (long) (length-1)*stride >= source.length) throw new IllegalArgumentException(String.format("RangeFrameStore error: %d frames from %d by %d outside source",length,start,stride));
+
+		// view the original store directly rather than chaining views
+		if (source instanceof RangeFrameStore) {
+			RangeFrameStore range = (RangeFrameStore) source;
+			this.source = range.source;
+			this.start = range.start + start*range.stride;
+			this.stride = range.stride * stride;
+		} else {
+			this.source = source;
+			this.start = start;
+			this.stride = stride;
+		}
+	}
+
+
+	/**
+	 * Get frame by index
+	 * @param index Index of the frame
+	 * @return Image of frame
+	 */
+	@Override
+	public BufferedImage getFrame(int index) {
+		return source.getFrame(start+index*stride);
+	}
+
+
+	/**
+	 * Read rectangular region of frame from the source store
+	 * @param index Index of the frame
+	 * @param x Top left x coordinate of the region
+	 * @param y Top left y coordinate of the region
+	 * @param w Width of the region
+	 * @param h Height of the region
+	 * @param pixels Destination array of at least w*h elements
+	 */
+	@Override
+	public void readRGB(int index, int x, int y, int w, int h, int[] pixels) {
+		source.readRGB(start+index*stride, x, y, w, h, pixels);
+	}
+
+
+	/**
+	 * Regions are read from the source store
+	 * @return Result of the source store
+	 */
+	@Override
+	public boolean hasRegionReads() {
+		return source.hasRegionReads();
+	}
+
+
+	/**
+	 * Read frame as greyscale bytes from the source store
+	 * @param index Index of the frame
+	 * @param grey Destination array
+	 * @param offset Offset into the destination array
+	 */
+	@Override
+	public void readGrey(int index, byte[] grey, int offset) {
+		source.readGrey(start+index*stride, grey, offset);
+	}
+}
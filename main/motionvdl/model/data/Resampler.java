@@ -0,0 +1,263 @@
+package motionvdl.model.data;
+
+import java.util.Arrays;
+
+/**
+ * Collection of static methods for resampling packed rgb pixel arrays
+ * @author Joseph
+ */
+public final class Resampler {
+
+	/**
+	 * Resampling filters
+	 */
+	public enum Filter {
+		NEAREST,  // closest source pixel, fastest
+		BILINEAR, // weighted mean of the four closest source pixels
+		AREA;     // mean of the covered source area, best for downscaling
+
+		@Override
+		public String toString() {
+			return name().charAt(0) + name().substring(1).toLowerCase();
+		}
+	}
+
+	// uninstantiable object
+	private Resampler() {}
+
+
+	/**
+	 * Resample packed rgb pixels in row major order to a target resolution
+	 * @param filter Resampling filter
+	 * @param source Source pixels
+	 * @param sw Source width
+	 * @param sh Source height
+	 * @param target Destination array of at least tw*th elements
+	 * @param tw Target width
+	 * @param th Target height
+	 */
+	public static void resample(Filter filter, int[] source, int sw, int sh, int[] target, int tw, int th) {
+		resample(filter, source, 0, 0, sw, sw, sh, target, 0, 0, tw, th, tw, th);
+	}
+
+	/**
+	 * Resample a rectangular tile of the target resolution from the source region it covers.
+	 * Tiles are identical to the same pixels of a whole frame resample, so a frame can be
+	 * processed tile by tile without holding the whole source frame
+	 * @param filter Resampling filter
+	 * @param source Source region pixels, covering at least the region given by getSourceRegion
+	 * @param sx Source x coordinate of the first region pixel
+	 * @param sy Source y coordinate of the first region pixel
+	 * @param scan Source region width
+	 * @param sw Source width
+	 * @param sh Source height
+	 * @param target Destination array of at least rw*rh elements
+	 * @param rx Target x coordinate of the tile
+	 * @param ry Target y coordinate of the tile
+	 * @param rw Tile width
+	 * @param rh Tile height
+	 * @param tw Target width
+	 * @param th Target height
+	 */
+	public static void resample(Filter filter, int[] source, int sx, int sy, int scan, int sw, int sh, int[] target, int rx, int ry, int rw, int rh, int tw, int th) {
+		switch (filter) {
+			case NEAREST  -> nearest(source, sx, sy, scan, sw, sh, target, rx, ry, rw, rh, tw, th);
+			case BILINEAR -> bilinear(source, sx, sy, scan, sw, sh, target, rx, ry, rw, rh, tw, th);
+			case AREA     -> {
+				if (sw % tw == 0 && sh % th == 0) box(source, sx, sy, scan, sw, sh, target, rx, ry, rw, rh, tw, th);
+				else area(source, sx, sy, scan, sw, sh, target, rx, ry, rw, rh, tw, th);
+			}
+		}
+	}
+
+
+	/**
+	 * Determine the source region read by any filter when resampling a tile of the target resolution
+	 * @param sw Source width
+	 * @param sh Source height
+	 * @param rx Target x coordinate of the tile
+	 * @param ry Target y coordinate of the tile
+	 * @param rw Tile width
+	 * @param rh Tile height
+	 * @param tw Target width
+	 * @param th Target height
+	 * @return Source region as x, y, width, height
+	 */
+	public static int[] getSourceRegion(int sw, int sh, int rx, int ry, int rw, int rh, int tw, int th) {
+		int x0 = (int) Math.max(0, (long) rx*sw / tw - 1);
+		int y0 = (int) Math.max(0, (long) ry*sh / th - 1);
+		int x1 = (int) Math.min(sw, ((long) (rx+rw)*sw + tw-1) / tw + 1);
+		int y1 = (int) Math.min(sh, ((long) (ry+rh)*sh + th-1) / th + 1);
+		return new int[] {x0, y0, x1-x0, y1-y0};
+	}
+
+
+	/**
+	 * Nearest neighbour resampling, sampling the source pixel under each target pixel centre
+	 */
+	private static void nearest(int[] source, int sx, int sy, int scan, int sw, int sh, int[] target, int rx, int ry, int rw, int rh, int tw, int th) {
+
+		// determine source column of each target column
+		int[] cols = new int[rw];
+		for (int k=0; k < rw; k++) cols[k] = (int) ((2L*(rx+k)+1)*sw / (2L*tw)) - sx;
+
+		// copy source pixels
+		for (int j=0; j < rh; j++) {
+			int row = ((int) ((2L*(ry+j)+1)*sh / (2L*th)) - sy) * scan;
+			for (int k=0; k < rw; k++) {
+				target[j*rw+k] = source[row+cols[k]];
+			}
+		}
+	}
+
+
+	/**
+	 * Bilinear resampling with pixel centres aligned, using 8 bit fixed point weights
+	 */
+	private static void bilinear(int[] source, int sx, int sy, int scan, int sw, int sh, int[] target, int rx, int ry, int rw, int rh, int tw, int th) {
+
+		// determine the left source column and right weight of each target column
+		int[] x0 = new int[rw];
+		int[] x1 = new int[rw];
+		int[] wx = new int[rw];
+		for (int k=0; k < rw; k++) {
+			double fx = Math.min(Math.max((rx+k+0.5) * sw / tw - 0.5, 0), sw-1);
+			int left = (int) fx;
+			x0[k] = left - sx;
+			x1[k] = Math.min(left+1, sw-1) - sx;
+			wx[k] = (int) Math.round((fx - left) * 256);
+		}
+
+		// blend the two closest source rows
+		for (int j=0; j < rh; j++) {
+			double fy = Math.min(Math.max((ry+j+0.5) * sh / th - 0.5, 0), sh-1);
+			int y0 = (int) fy;
+			int row0 = (y0 - sy) * scan;
+			int row1 = (Math.min(y0+1, sh-1) - sy) * scan;
+			int wy = (int) Math.round((fy - y0) * 256);
+			for (int k=0; k < rw; k++) {
+				int p00 = source[row0+x0[k]];
+				int p01 = source[row0+x1[k]];
+				int p10 = source[row1+x0[k]];
+				int p11 = source[row1+x1[k]];
+				int w11 = wx[k] * wy;
+				int w10 = (256-wx[k]) * wy;
+				int w01 = wx[k] * (256-wy);
+				int w00 = (256-wx[k]) * (256-wy);
+				int rgb = 0;
+				for (int shift=16; shift >= 0; shift-=8) {
+					int c = ((p00 >> shift & 255)*w00 + (p01 >> shift & 255)*w01 + (p10 >> shift & 255)*w10 + (p11 >> shift & 255)*w11 + 32768) >> 16;
+					rgb |= c << shift;
+				}
+				target[j*rw+k] = rgb;
+			}
+		}
+	}
+
+
+	/**
+	 * Integer box filter for whole number scale ratios, averaging each fx*fy block with integer sums
+	 */
+	private static void box(int[] source, int sx, int sy, int scan, int sw, int sh, int[] target, int rx, int ry, int rw, int rh, int tw, int th) {
+
+		// determine block size
+		int fx = sw / tw;
+		int fy = sh / th;
+		int count = fx * fy;
+		int half = count / 2;
+
+		// sum each block of source pixels
+		int[] sums = new int[3*rw];
+		for (int j=0; j < rh; j++) {
+			Arrays.fill(sums, 0);
+			for (int r=(ry+j)*fy; r < (ry+j+1)*fy; r++) {
+				int row = (r - sy) * scan - sx;
+				for (int k=0; k < rw; k++) {
+					int red = 0, green = 0, blue = 0;
+					for (int c=(rx+k)*fx; c < (rx+k+1)*fx; c++) {
+						int rgb = source[row+c];
+						red   += rgb >> 16 & 255;
+						green += rgb >> 8 & 255;
+						blue  += rgb & 255;
+					}
+					sums[3*k+0] += red;
+					sums[3*k+1] += green;
+					sums[3*k+2] += blue;
+				}
+			}
+
+			// average each block with rounding
+			for (int k=0; k < rw; k++) {
+				int red   = (sums[3*k+0] + half) / count;
+				int green = (sums[3*k+1] + half) / count;
+				int blue  = (sums[3*k+2] + half) / count;
+				target[j*rw+k] = red << 16 | green << 8 | blue;
+			}
+		}
+	}
+
+
+	/**
+	 * Area average resampling for any scale ratio, weighting each source pixel by its overlap with the target pixel
+	 */
+	private static void area(int[] source, int sx, int sy, int scan, int sw, int sh, int[] target, int rx, int ry, int rw, int rh, int tw, int th) {
+
+		// determine the source pixel contributions to each target column and row of the tile
+		double[][] cols = areaWeights(sw, tw, rx, rw);
+		double[][] rows = areaWeights(sh, th, ry, rh);
+		double area = ((double) sw / tw) * ((double) sh / th);
+
+		// accumulate weighted source rows into each target row
+		double[] sums = new double[3*rw];
+		for (int j=0; j < rh; j++) {
+			Arrays.fill(sums, 0);
+			for (int r=0; r < rows[j].length; r+=2) {
+				int row = ((int) rows[j][r] - sy) * scan - sx;
+				double wy = rows[j][r+1];
+				for (int k=0; k < rw; k++) {
+					for (int c=0; c < cols[k].length; c+=2) {
+						int rgb = source[row+(int) cols[k][c]];
+						double wxy = wy * cols[k][c+1];
+						sums[3*k+0] += wxy * (rgb >> 16 & 255);
+						sums[3*k+1] += wxy * (rgb >> 8 & 255);
+						sums[3*k+2] += wxy * (rgb & 255);
+					}
+				}
+			}
+
+			// average each channel
+			for (int k=0; k < rw; k++) {
+				int red   = (int) Math.round(sums[3*k+0] / area);
+				int green = (int) Math.round(sums[3*k+1] / area);
+				int blue  = (int) Math.round(sums[3*k+2] / area);
+				target[j*rw+k] = red << 16 | green << 8 | blue;
+			}
+		}
+	}
+
+
+	/**
+	 * Determine the overlap of each source pixel with each target pixel of a span along one axis
+	 * @param source Source resolution
+	 * @param target Target resolution
+	 * @param from First target pixel of the span
+	 * @param count Number of target pixels in the span
+	 * @return Per target pixel array of (source index, overlap) pairs
+	 */
+	private static double[][] areaWeights(int source, int target, int from, int count) {
+		double[][] weights = new double[count][];
+		double step = (double) source / target;
+		for (int i=0; i < count; i++) {
+			double start = (from+i) * step;
+			double end = (from+i+1) * step;
+			int first = (int) Math.floor(start);
+			int last = Math.min(source, (int) Math.ceil(end));
+			weights[i] = new double[2*(last-first)];
+			for (int j=first; j < last; j++) {
+				weights[i][2*(j-first)+0] = j;
+				weights[i][2*(j-first)+1] = Math.min(end, j+1) - Math.max(start, j);
+			}
+		}
+		return weights;
+	}
+}
@@ -0,0 +1,141 @@
+package motionvdl.model.data;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntFunction;
+
+/**
+ * Frame store joining a sequence of fixed length segment stores end to end.
+ * Each segment is only touched when one of its frames is requested, and segments
+ * given by a loader are only loaded then
+ * @author Joseph
+ */
+public class SegmentedFrameStore extends FrameStore {
+
+	// segments, null until loaded
+	public final int segmentLength;
+	private final AtomicReferenceArray<FrameStore> segments;
+	private final IntFunction<FrameStore> loader;
+
+	/**
+	 * Construct store from segments
+	 * @param segments Segment stores, all but the last holding exactly segmentLength frames
+	 * @param segmentLength Frames per segment
+	 * @throws IllegalArgumentException Segments do not match in resolution or length
+	 */
+	public SegmentedFrameStore(FrameStore[] segments, int segmentLength) throws IllegalArgumentException {
+		super(
+			segments.length > 0 ? segments[0].width : 0,
+			segments.length > 0 ? segments[0].height : 0,
+			segments.length > 0 ? (segments.length-1)*segmentLength + segments[segments.length-1].length : 0);
+
+		// throw mismatched segments
+		for (int i=0; i < segments.length; i++) {
+			if (segments[i].width != width || segments[i].height != height) throw new IllegalArgumentException(String.format("SegmentedFrameStore error: segment %d resolution mismatch",i));
+			if (i < segments.length-1 && segments[i].length != segmentLength) throw new IllegalArgumentException(String.format("SegmentedFrameStore error: segment %d length mismatch",i));
+		}
+
+		// setup segments
+		this.segmentLength = segmentLength;
+		this.segments = new AtomicReferenceArray<>(segments);
+		this.loader = null;
+	}
+
+	/**
+	 * Construct store loading each segment when one of its frames is first requested
+	 * @param width Frame width
+	 * @param height Frame height
+	 * @param length Number of frames
+	 * @param segmentLength Frames per segment
+	 * @param loader Function from segment index to segment store, all but the last holding exactly segmentLength frames
+	 * @throws ArrayIndexOutOfBoundsException Dimensions less than 1
+	 */
+	public SegmentedFrameStore(int width, int height, int length, int segmentLength, IntFunction<FrameStore> loader) throws ArrayIndexOutOfBoundsException {
+		super(width, height, length);
+		this.segmentLength = segmentLength;
+		this.segments = new AtomicReferenceArray<>((length + segmentLength - 1) / segmentLength);
+		this.loader = loader;
+	}
+
+
+	/**
+	 * Get the store of a segment, loading it on first access
+	 * @param index Index of the segment
+	 * @return Segment store
+	 * @throws IllegalArgumentException Loaded segment does not match in resolution or length
+	 */
+	private FrameStore getSegment(int index) throws IllegalArgumentException {
+
+		// return loaded segment
+		FrameStore segment = segments.get(index);
+		if (segment != null) return segment;
+
+		// load segment, the loader returns the same store to racing threads
+		segment = loader.apply(index);
+		int expected = Math.min(segmentLength, length - index*segmentLength);
+		if (segment.width != width || segment.height != height) throw new IllegalArgumentException(String.format("SegmentedFrameStore error: segment %d resolution mismatch",index));
+		if (segment.length != expected) throw new IllegalArgumentException(String.format("SegmentedFrameStore error: segment %d length mismatch",index));
+		segments.compareAndSet(index, null, segment);
+		return segments.get(index);
+	}
+
+
+	/**
+	 * Get frame by index
+	 * @param index Index of the frame
+	 * @return Image of frame
+	 */
+	@Override
+	public BufferedImage getFrame(int index) {
+		return getSegment(index / segmentLength).getFrame(index % segmentLength);
+	}
+
+
+	/**
+	 * Read rectangular region of frame from its segment
+	 * @param index Index of the frame
+	 * @param x Top left x coordinate of the region
+	 * @param y Top left y coordinate of the region
+	 * @param w Width of the region
+	 * @param h Height of the region
+	 * @param pixels Destination array of at least w*h elements
+	 */
+	@Override
+	public void readRGB(int index, int x, int y, int w, int h, int[] pixels) {
+		getSegment(index / segmentLength).readRGB(index % segmentLength, x, y, w, h, pixels);
+	}
+
+
+	/**
+	 * Regions are read from the source store
+	 * @return Result of the source store
+	 */
+	@Override
+	public boolean hasRegionReads() {
+		return getSegment(0).hasRegionReads();
+	}
+
+
+	/**
+	 * Read frame as greyscale bytes from its segment
+	 * @param index Index of the frame
+	 * @param grey Destination array
+	 * @param offset Offset into the destination array
+	 */
+	@Override
+	public void readGrey(int index, byte[] grey, int offset) {
+		getSegment(index / segmentLength).readGrey(index % segmentLength, grey, offset);
+	}
+
+
+	/**
+	 * Release every loaded segment
+	 */
+	@Override
+	public void release() {
+		for (int i=0; i < segments.length(); i++) {
+			FrameStore segment = segments.getAndSet(i, null);
+			if (segment != null) segment.release();
+		}
+	}
+}
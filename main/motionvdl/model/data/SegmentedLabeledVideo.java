@@ -0,0 +1,318 @@
+package motionvdl.model.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+
+import motionvdl.Debug;
+import motionvdl.model.FileSystem;
+
+/**
+ * Labeled video held as a sequence of fixed length segments, lifting the 16 bit
+ * length and resolution limits of the single labeled video encoding. The frames
+ * of a segment are memory mapped on first access, also through a joined video, so
+ * memory and processing scale with the segments in use. Labels are decoded on
+ * first access from the compact label table at the end of the file.
+ * <p>
+ * Encoded as a header of the magic bytes "MVDS" followed by 32 bit length,
+ * height, width, segment length, label capacity and segment count, then the
+ * 64 bit file position of each segment label. The greyscale frames of every
+ * segment follow the header, then the label encoding of each segment. Frames
+ * keep their position when labels change, so a mapped file can be rewritten
+ * in place
+ * @author Joseph
+ */
+public class SegmentedLabeledVideo extends Encoding {
+
+	// constants
+	public static final int SEGMENT_LENGTH = 1024;
+	private static final byte[] MAGIC = new byte[] {'M','V','D','S'};
+	private static final int HEADER_SIZE = MAGIC.length + 6*4;
+
+	// metadata
+	public final int length;
+	public final int height;
+	public final int width;
+	public final int capacity;
+	public final int segmentLength;
+	public final int segmentCount;
+
+	// segment components, loaded on first access when backed by a file
+	private final Video[] videos;
+	private final Label[] labels;
+	private final String location;
+	private final long[] offsets; // label positions followed by the file size
+
+	/**
+	 * Construct segmented labeled video with the default segment length
+	 * @param source Labeled video to split
+	 */
+	public SegmentedLabeledVideo(LabeledVideo source) {
+		this(source, SEGMENT_LENGTH);
+	}
+
+	/**
+	 * Construct segmented labeled video from a labeled video. Video segments share
+	 * the source frames, label segments are copies of the source label
+	 * @param source Labeled video to split
+	 * @param segmentLength Frames per segment
+	 * @throws IllegalArgumentException Segment length outside the label encoding limits
+	 */
+	public SegmentedLabeledVideo(LabeledVideo source, int segmentLength) throws IllegalArgumentException {
+
+		// throw exceptions
+		if (segmentLength < 1 || segmentLength > SIXTEEN_BIT_LIMIT) throw new IllegalArgumentException(String.format("SegmentedLabeledVideo error: invalid segment length '%d'",segmentLength));
+
+		// setup metadata
+		this.length = source.video.length;
+		this.height = source.video.height;
+		this.width = source.video.width;
+		this.capacity = source.label.capacity;
+		this.segmentLength = segmentLength;
+		this.segmentCount = (length + segmentLength - 1) / segmentLength;
+
+		// split video and label
+		videos = new Video[segmentCount];
+		labels = new Label[segmentCount];
+		for (int i=0; i < segmentCount; i++) {
+			int start = i*segmentLength;
+			int end = Math.min(start+segmentLength, length);
+			videos[i] = source.video.getRange(start, end);
+			labels[i] = source.label.getRange(start, end);
+		}
+		location = null;
+		offsets = null;
+
+		// debug trace
+		Debug.trace(String.format("Created (%d,%d,%d) segmented labeled video of %d segments",length,height,width,segmentCount));
+	}
+
+	/**
+	 * Construct segmented labeled video from encoded file. Only the header is read,
+	 * segment frames are memory mapped and labels decoded when first accessed
+	 * @param location Filesystem location
+	 * @throws IOException Problem accessing filesystem
+	 * @throws IllegalArgumentException Malformed file
+	 */
+	public SegmentedLabeledVideo(String location) throws IOException, IllegalArgumentException {
+
+		// read header
+		ByteBuffer header = ByteBuffer.wrap(FileSystem.readBytes(location, 0, HEADER_SIZE));
+		for (byte b : MAGIC) {
+			if (header.get() != b) throw new IllegalArgumentException("SegmentedLabeledVideo error: malformed file");
+		}
+		this.length = header.getInt();
+		this.height = header.getInt();
+		this.width = header.getInt();
+		this.segmentLength = header.getInt();
+		this.capacity = header.getInt();
+		this.segmentCount = header.getInt();
+
+		// throw inconsistent header
+		if (length < 1 || height < 1 || width < 1 || segmentLength < 1 || segmentCount != (length + segmentLength - 1) / segmentLength) throw new IllegalArgumentException("SegmentedLabeledVideo error: malformed file");
+
+		// read label positions
+		ByteBuffer table = ByteBuffer.wrap(FileSystem.readBytes(location, HEADER_SIZE, segmentCount*8));
+		offsets = new long[segmentCount+1];
+		for (int i=0; i < segmentCount; i++) {
+			offsets[i] = table.getLong();
+		}
+		offsets[segmentCount] = FileSystem.getSize(location);
+
+		// setup segments
+		this.videos = new Video[segmentCount];
+		this.labels = new Label[segmentCount];
+		this.location = location;
+
+		// debug trace
+		Debug.trace(String.format("Created (%d,%d,%d) segmented labeled video of %d segments from '%s'",length,height,width,segmentCount,location));
+	}
+
+
+	/**
+	 * Get segment by index, loading it when backed by a file
+	 * @param index Index of the segment
+	 * @return Labeled video of the segment frames
+	 * @throws IOException Problem accessing filesystem
+	 * @throws IllegalArgumentException Malformed file
+	 */
+	public LabeledVideo getSegment(int index) throws IOException, IllegalArgumentException {
+		return new LabeledVideo(getVideo(index), getLabel(index));
+	}
+
+
+	/**
+	 * Get the frames of a segment, memory mapping them on first access when backed by a file
+	 * @param index Index of the segment
+	 * @return Video of the segment frames
+	 * @throws IOException Problem accessing filesystem
+	 */
+	private synchronized Video getVideo(int index) throws IOException {
+
+		// return loaded frames
+		if (videos[index] != null) return videos[index];
+
+		// map frames
+		int frames = Math.min(segmentLength, length - index*segmentLength);
+		videos[index] = new Video(new MappedFrameStore(location, getVideoOffset(index), width, height, frames));
+
+		// debug trace
+		Debug.trace(String.format("SegmentedLabeledVideo: mapped segment %d",index));
+
+		return videos[index];
+	}
+
+
+	/**
+	 * Get the label of a segment, decoding it on first access when backed by a file
+	 * @param index Index of the segment
+	 * @return Label of the segment frames
+	 * @throws IOException Problem accessing filesystem
+	 * @throws IllegalArgumentException Malformed file
+	 */
+	private synchronized Label getLabel(int index) throws IOException, IllegalArgumentException {
+
+		// return loaded label
+		if (labels[index] != null) return labels[index];
+
+		// decode label
+		long labelVolume = offsets[index+1] - offsets[index];
+		if (labelVolume < 0 || labelVolume > Integer.MAX_VALUE || offsets[index] < getVideoOffset(segmentCount)) throw new IllegalArgumentException(String.format("SegmentedLabeledVideo error: malformed segment %d",index));
+		labels[index] = new Label(FileSystem.readBytes(location, offsets[index], (int) labelVolume));
+		return labels[index];
+	}
+
+
+	/**
+	 * Get the file position of the first frame of a segment
+	 * @param index Index of the segment, the segment count gives the position after the last frame
+	 * @return File position
+	 */
+	private long getVideoOffset(int index) {
+		return HEADER_SIZE + 8L*segmentCount + Math.min((long) index*segmentLength, length)*height*width;
+	}
+
+
+	/**
+	 * Join every segment into a single labeled video. Segment frames are shared with
+	 * this instance and are mapped when one of them is first read, the label is a copy
+	 * of the segment labels, which are decoded up front as labelling needs all of them
+	 * @return Joined labeled video
+	 * @throws IOException Problem accessing filesystem
+	 * @throws IllegalArgumentException Malformed file
+	 */
+	public LabeledVideo getJoined() throws IOException, IllegalArgumentException {
+
+		// collect segment labels
+		Label[] joined = new Label[segmentCount];
+		for (int i=0; i < segmentCount; i++) {
+			joined[i] = getLabel(i);
+		}
+
+		// join frames loading each segment on first access
+		FrameStore store = new SegmentedFrameStore(width, height, length, segmentLength, i -> {
+			try {
+				return getVideo(i).getStore();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+		return new LabeledVideo(new Video(store), new Label(joined));
+	}
+
+
+	/**
+	 * Join the pixel statistics gathered by the last encoding pass of every segment
+	 * @return Pixel statistics, null when any segment has not been encoded
+	 */
+	public synchronized FrameStatistics getStatistics() {
+		FrameStatistics[] statistics = new FrameStatistics[segmentCount];
+		for (int i=0; i < segmentCount; i++) {
+			if (videos[i] == null || videos[i].getStatistics() == null) return null;
+			statistics[i] = videos[i].getStatistics();
+		}
+		return new FrameStatistics(statistics);
+	}
+	
+	
+	/**
+	 * Release the frames of every loaded segment, the segmented labeled video must not be used afterwards
+	 */
+	public synchronized void release() {
+		for (Video video : videos) {
+			if (video != null) video.release();
+		}
+	}
+
+
+	/**
+	 * Write encoding to output stream one segment at a time, streaming the video frames
+	 * @param output Output stream
+	 * @throws IOException Problem writing to the stream or loading segments
+	 * @throws ArrayIndexOutOfBoundsException Label capacity exceeding value limits
+	 */
+	@Override
+	public void write(OutputStream output) throws IOException, ArrayIndexOutOfBoundsException {
+
+		// encode labels to determine their positions after the frames
+		byte[][] encodedLabels = new byte[segmentCount][];
+		long[] positions = new long[segmentCount];
+		long position = getVideoOffset(segmentCount);
+		for (int i=0; i < segmentCount; i++) {
+			encodedLabels[i] = getLabel(i).getEncoding();
+			positions[i] = position;
+			position += encodedLabels[i].length;
+		}
+
+		// write header
+		DataOutputStream data = new DataOutputStream(output);
+		data.write(MAGIC);
+		data.writeInt(length);
+		data.writeInt(height);
+		data.writeInt(width);
+		data.writeInt(segmentLength);
+		data.writeInt(capacity);
+		data.writeInt(segmentCount);
+		for (long segmentPosition : positions) {
+			data.writeLong(segmentPosition);
+		}
+
+		// write frames then labels
+		for (int i=0; i < segmentCount; i++) {
+			getVideo(i).writeFrames(data);
+		}
+		for (byte[] encodedLabel : encodedLabels) {
+			data.write(encodedLabel);
+		}
+		data.flush();
+
+		// debug trace
+		Debug.trace(String.format("SegmentedLabeledVideo: written %d segments as byte sequence",segmentCount));
+	}
+
+
+	/**
+	 * Encode as byte sequence
+	 * @return Byte sequence
+	 * @throws ArrayIndexOutOfBoundsException Exceeding value limits or too large for a byte sequence
+	 * @throws UncheckedIOException Problem loading segments
+	 */
+	@Override
+	public byte[] getEncoding() throws ArrayIndexOutOfBoundsException, UncheckedIOException {
+
+		// throw sequences beyond the array size limit
+		if ((long) length*height*width > Integer.MAX_VALUE - HEADER_SIZE - 8L*segmentCount) throw new ArrayIndexOutOfBoundsException("SegmentedLabeledVideo error: buffer too large for a byte sequence");
+
+		// write encoding to memory
+		try {
+			ByteArrayOutputStream encoding = new ByteArrayOutputStream();
+			write(encoding);
+			return encoding.toByteArray();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
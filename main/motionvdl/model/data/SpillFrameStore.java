@@ -0,0 +1,360 @@
+package motionvdl.model.data;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import motionvdl.Debug;
+import motionvdl.model.FileSystem;
+
+/**
+ * Greyscale frame store holding frames up to a byte budget in slots of the configured
+ * storage. Once the budget is exceeded the least recently used frames are spilled to a
+ * scratch file and faulted back in when they are next read.
+ * <p>
+ * Slot bookkeeping is guarded by the store monitor, while frame copies and scratch file
+ * reads and writes happen outside it on a pinned slot, so frames are read and written
+ * in parallel and only threads wanting the same slot wait for each other
+ * @author Joseph
+ */
+public class SpillFrameStore extends GreyFrameStore {
+
+	// budget
+	public final long budget;
+	private final int volume;   // bytes per frame
+	private final int capacity; // frames held in slots
+
+	// frames held in slots, in access order of their frame index
+	private final GreyFrameStore slots;
+	private final LinkedHashMap<Integer, Integer> resident;
+	private final int[] slotFrame; // frame held by each slot, -1 when free
+	private final int[] pins;      // threads using each slot
+	private final boolean[] busy;  // slot is being filled
+	private int used = 0;          // slots handed out
+
+	// scratch file, opened on the first spill
+	private final String directory;
+	private final boolean[] spilled; // scratch file holds the current frame
+	private final boolean[] writing; // frame is being written to the scratch file
+	private FileChannel scratch;
+	private boolean released = false;
+
+	/**
+	 * Construct empty store
+	 * @param width Frame width
+	 * @param height Frame height
+	 * @param length Number of frames
+	 * @param budget Maximum bytes of frames held in memory, at least one frame is always held
+	 * @param directory Filesystem directory location for the scratch file
+	 * @param storage Storage of the frames held in memory
+	 * @throws ArrayIndexOutOfBoundsException Dimensions less than 1
+	 */
+	public SpillFrameStore(int width, int height, int length, long budget, String directory, Storage storage) throws ArrayIndexOutOfBoundsException {
+		super(width, height, length);
+
+		// setup budget
+		this.budget = budget;
+		this.volume = width*height;
+		this.capacity = (int) Math.max(1, Math.min(length, budget / volume));
+
+		// setup slots
+		this.slots = switch (storage) {
+			case HEAP   -> new ArrayFrameStore(width, height, capacity);
+			case DIRECT -> new DirectFrameStore(width, height, capacity);
+		};
+		this.resident = new LinkedHashMap<>(16, 0.75f, true);
+		this.slotFrame = new int[capacity];
+		this.pins = new int[capacity];
+		this.busy = new boolean[capacity];
+		Arrays.fill(slotFrame, -1);
+
+		// setup frames
+		this.directory = directory;
+		this.spilled = new boolean[length];
+		this.writing = new boolean[length];
+
+		// debug trace
+		Debug.trace(String.format("Created (%d,%d,%d) spill frame store holding %d frames in %s storage",length,height,width,capacity,storage));
+	}
+
+
+	/**
+	 * Pin the slot holding a frame, faulting the frame in from the scratch file and
+	 * evicting the least recently used unpinned frame when it is not held. The caller
+	 * must unpin the slot afterwards
+	 * @param index Index of the frame
+	 * @param load Whether the frame contents are needed, false when it is about to be overwritten
+	 * @param grey Buffer of at least a frame used to fault the frame in, null to allocate one when needed
+	 * @param offset Offset into the buffer
+	 * @return Pinned slot holding the frame
+	 * @throws IOException Problem accessing the scratch file
+	 */
+	private int pin(int index, boolean load, byte[] grey, int offset) throws IOException {
+
+		// claim slot under the monitor
+		int slot;
+		int evicted;
+		synchronized (this) {
+			while (true) {
+				if (released) throw new IllegalStateException("SpillFrameStore error: store has been released");
+
+				// pin held frame once it is filled
+				Integer held = resident.get(index);
+				if (held != null && !busy[held]) {
+					pins[held]++;
+					return held;
+				}
+
+				// claim a free slot, or the least recently used unpinned slot, once the frame is not being spilled
+				slot = (held == null && !writing[index]) ? claim() : -1;
+				if (slot >= 0) break;
+				await();
+			}
+
+			// hand the slot over to the frame, the evicted frame is written out before it can be faulted in again
+			evicted = slotFrame[slot];
+			if (evicted >= 0) {
+				resident.remove(evicted);
+				if (spilled[evicted]) {
+					evicted = -1;
+				} else {
+					writing[evicted] = true;
+				}
+			}
+			slotFrame[slot] = index;
+			resident.put(index, slot);
+			busy[slot] = true;
+			pins[slot] = 1;
+		}
+
+		// spill evicted frame and fault in the frame outside the monitor
+		boolean filled = false;
+		try {
+			if (evicted >= 0) {
+				byte[] frame = new byte[volume];
+				slots.readGrey(slot, frame, 0);
+				write(evicted, frame);
+			}
+			if (load) {
+				if (grey == null) {
+					grey = new byte[volume];
+					offset = 0;
+				}
+				if (spilled[index]) {
+					read(index, grey, offset);
+				} else {
+					Arrays.fill(grey, offset, offset+volume, (byte) 0);
+				}
+				slots.writeGrey(slot, grey, offset);
+			}
+			filled = true;
+		} finally {
+
+			// record the outcome and wake waiting threads
+			synchronized (this) {
+				if (evicted >= 0) {
+					writing[evicted] = false;
+					spilled[evicted] = filled || spilled[evicted];
+				}
+				busy[slot] = false;
+				if (!filled) {
+					resident.remove(index);
+					slotFrame[slot] = -1;
+					pins[slot] = 0;
+				}
+				notifyAll();
+			}
+		}
+		return slot;
+	}
+
+
+	/**
+	 * Claim a free slot, or the least recently used unpinned slot, under the monitor
+	 * @return Slot, -1 when every slot is in use
+	 */
+	private int claim() {
+		if (used < capacity) return used++;
+		for (int slot=0; slot < capacity; slot++) {
+			if (slotFrame[slot] < 0) return slot;
+		}
+		for (Map.Entry<Integer, Integer> entry : resident.entrySet()) {
+			int slot = entry.getValue();
+			if (pins[slot] == 0 && !busy[slot]) return slot;
+		}
+		return -1;
+	}
+
+
+	/**
+	 * Wait on the monitor for a slot or frame to become available
+	 * @throws IllegalStateException Interrupted while waiting
+	 */
+	private void await() throws IllegalStateException {
+		try {
+			wait();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("SpillFrameStore error: interrupted waiting for a frame");
+		}
+	}
+
+
+	/**
+	 * Unpin a slot and wake threads waiting for one
+	 */
+	private synchronized void unpin(int slot) {
+		if (--pins[slot] == 0) notifyAll();
+	}
+
+
+	/**
+	 * Get the scratch file, opening it on the first spill
+	 */
+	private synchronized FileChannel getScratch() throws IOException {
+		if (scratch == null) scratch = FileSystem.openScratch(directory);
+		return scratch;
+	}
+
+
+	/**
+	 * Write frame to the scratch file at its position
+	 */
+	private void write(int index, byte[] frame) throws IOException {
+		FileChannel channel = getScratch();
+		ByteBuffer buffer = ByteBuffer.wrap(frame);
+		long position = (long) index * volume;
+		while (buffer.hasRemaining()) position += channel.write(buffer, position);
+	}
+
+
+	/**
+	 * Read frame from the scratch file at its position
+	 */
+	private void read(int index, byte[] grey, int offset) throws IOException {
+		FileChannel channel = getScratch();
+		ByteBuffer buffer = ByteBuffer.wrap(grey, offset, volume);
+		long position = (long) index * volume;
+		while (buffer.hasRemaining()) {
+			int count = channel.read(buffer, position);
+			if (count < 0) throw new IOException("SpillFrameStore error: unexpected end of scratch file");
+			position += count;
+		}
+	}
+
+
+	/**
+	 * Read frame greyscale bytes in row major order
+	 * @param index Index of the frame
+	 * @param grey Destination array
+	 * @param offset Offset into the destination array
+	 * @throws UncheckedIOException Problem accessing the scratch file
+	 */
+	@Override
+	public void readGrey(int index, byte[] grey, int offset) throws UncheckedIOException {
+		int slot;
+		try {
+			slot = pin(index, true, grey, offset);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		try {
+			slots.readGrey(slot, grey, offset);
+		} finally {
+			unpin(slot);
+		}
+	}
+
+
+	/**
+	 * Read rectangular region of frame as packed rgb pixels with equal color channels
+	 * @param index Index of the frame
+	 * @param x Top left x coordinate of the region
+	 * @param y Top left y coordinate of the region
+	 * @param w Width of the region
+	 * @param h Height of the region
+	 * @param pixels Destination array of at least w*h elements
+	 * @throws UncheckedIOException Problem accessing the scratch file
+	 */
+	@Override
+	public void readRGB(int index, int x, int y, int w, int h, int[] pixels) throws UncheckedIOException {
+		int slot;
+		try {
+			slot = pin(index, true, null, 0);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		try {
+			slots.readRGB(slot, x, y, w, h, pixels);
+		} finally {
+			unpin(slot);
+		}
+	}
+
+
+	/**
+	 * Regions are read from the frame rows they cover
+	 * @return True
+	 */
+	@Override
+	public boolean hasRegionReads() {
+		return true;
+	}
+
+
+	/**
+	 * Write frame greyscale bytes in row major order
+	 * @param index Index of the frame
+	 * @param grey Source array
+	 * @param offset Offset into the source array
+	 * @throws UncheckedIOException Problem accessing the scratch file
+	 */
+	@Override
+	public void writeGrey(int index, byte[] grey, int offset) throws UncheckedIOException {
+		int slot;
+		try {
+			slot = pin(index, false, null, 0);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		try {
+			slots.writeGrey(slot, grey, offset);
+		} finally {
+			synchronized (this) {
+				spilled[index] = false;
+			}
+			unpin(slot);
+		}
+	}
+
+
+	/**
+	 * Release the frames held in memory and delete the scratch file
+	 */
+	@Override
+	public synchronized void release() {
+
+		// ignore repeated release
+		if (released) return;
+		released = true;
+
+		// release frames
+		resident.clear();
+		slots.release();
+		notifyAll();
+
+		// close and delete scratch file
+		if (scratch != null) {
+			try {
+				scratch.close();
+			} catch (IOException e) {
+				Debug.trace("SpillFrameStore: problem closing scratch file "+e.getMessage());
+			}
+			scratch = null;
+		}
+	}
+}
@@ -0,0 +1,226 @@
+package motionvdl.model.data;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import motionvdl.Debug;
+import motionvdl.model.FileSystem;
+
+/**
+ * Frame store that decodes image files on background threads ahead of the frame being
+ * read, so frames can be read while the rest are still loading. The frame count is known
+ * from the file list up front. Decoded frames are held as images, so frames read the same
+ * pixels as a lazy store of the same files, in a window bounded in bytes evicting the
+ * least recently used frame, and background decoding only
+ * runs a bounded distance ahead of the last frame read, so memory does not grow with the
+ * source. Reading a frame that is not held decodes it on the calling thread, or waits for
+ * the background thread already decoding it, and evicted frames are decoded again
+ * @author Joseph
+ */
+public class StreamingFrameStore extends FrameStore {
+
+	// frame states
+	private static final byte PENDING = 0;
+	private static final byte DECODING = 1;
+	private static final byte LOADED = 2;
+	private static final byte FAILED = 3;
+
+	// frame sources
+	private final File[] sources;
+
+	// window of decoded frames in access order
+	public final long budget;
+	public final int capacity; // frames held in the window
+	private final int horizon; // frames decoded ahead of the last frame read
+	private final LinkedHashMap<Integer, BufferedImage> window;
+
+	// decoding progress
+	private final byte[] states;
+	private final IOException[] failures;
+	private int position = 0; // last frame read
+	private boolean released = false;
+
+	/**
+	 * Construct store from image files and start decoding in the background, the first
+	 * frame is decoded before returning and determines the resolution
+	 * @param sources Frame image files in frame order
+	 * @param budget Maximum bytes of decoded frames held, at least two frames are always held
+	 * @throws IOException Problem reading the first frame
+	 * @throws ArrayIndexOutOfBoundsException No frames
+	 */
+	public StreamingFrameStore(File[] sources, long budget) throws IOException, ArrayIndexOutOfBoundsException {
+		this(sources, budget, sources.length > 0 ? FileSystem.readImage(sources[0]) : null);
+	}
+
+	// construct with the decoded first frame
+	private StreamingFrameStore(File[] sources, long budget, BufferedImage first) {
+
+		// setup metadata
+		super(
+			first != null ? first.getWidth() : 0,
+			first != null ? first.getHeight() : 0,
+			sources.length);
+
+		// setup window, reading ahead over half of it
+		this.sources = sources;
+		this.budget = budget;
+		this.capacity = (int) Math.max(2, Math.min(length, budget / LazyFrameStore.getBytes(first)));
+		this.horizon = Math.max(1, capacity / 2);
+		this.window = new LinkedHashMap<>(16, 0.75f, true);
+
+		// setup frames, holding the first
+		this.states = new byte[length];
+		this.failures = new IOException[length];
+		window.put(0, first);
+		states[0] = LOADED;
+
+		// decode frames ahead on background threads, leaving a core for the caller
+		int threads = Math.max(1, FramePool.getParallelism()-1);
+		for (int t=0; t < threads; t++) {
+			Thread decoder = new Thread(this::decodeAhead, "StreamingFrameStore-"+t);
+			decoder.setDaemon(true);
+			decoder.start();
+		}
+
+		// debug trace
+		Debug.trace(String.format("Created (%d,%d,%d) streaming frame store holding %d frames with %d decoders",length,height,width,capacity,threads));
+	}
+
+
+	/**
+	 * Claim and decode pending frames within the horizon after the last frame read,
+	 * waiting for reads to move on otherwise, until the store is released
+	 */
+	private void decodeAhead() {
+		while (true) {
+			int index;
+			synchronized (this) {
+				for (index = findPending(); !released && index < 0; index = findPending()) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+				if (released) return;
+				states[index] = DECODING;
+			}
+			decode(index);
+		}
+	}
+
+
+	/**
+	 * Find the first pending frame within the horizon after the last frame read, under the monitor
+	 * @return Index of the frame, -1 when none
+	 */
+	private int findPending() {
+		int end = (int) Math.min(length, (long) position + 1 + horizon);
+		for (int index=position; index < end; index++) {
+			if (states[index] == PENDING) return index;
+		}
+		return -1;
+	}
+
+
+	/**
+	 * Decode a claimed frame into the window and wake threads waiting for it
+	 * @param index Index of the frame
+	 * @return Image of frame, null when the frame failed to decode
+	 */
+	private BufferedImage decode(int index) {
+
+		// decode frame outside the lock so other frames can be decoded meanwhile
+		IOException failure = null;
+		BufferedImage frame = null;
+		try {
+			frame = FileSystem.readImage(sources[index]);
+			if (frame.getWidth() != width || frame.getHeight() != height) throw new IOException(String.format("StreamingFrameStore error: frame %d has resolution %dx%d, expected %dx%d",index,frame.getWidth(),frame.getHeight(),width,height));
+		} catch (IOException e) {
+			frame = null;
+			failure = e;
+		}
+
+		// hold frame, evicting the least recently used frames over the window capacity
+		synchronized (this) {
+			if (released) {
+				states[index] = PENDING;
+			} else if (failure == null) {
+				window.put(index, frame);
+				states[index] = LOADED;
+				Iterator<Map.Entry<Integer, BufferedImage>> eldest = window.entrySet().iterator();
+				while (window.size() > capacity) {
+					states[eldest.next().getKey()] = PENDING;
+					eldest.remove();
+				}
+			} else {
+				states[index] = FAILED;
+				failures[index] = failure;
+			}
+			notifyAll();
+		}
+		return frame;
+	}
+
+
+	/**
+	 * Get frame by index, moving the read ahead horizon to the frame and decoding it
+	 * first when it is not held or waiting for the thread decoding it
+	 * @param index Index of the frame
+	 * @return Image of frame
+	 * @throws UncheckedIOException Problem reading the frame
+	 */
+	@Override
+	public BufferedImage getFrame(int index) throws UncheckedIOException {
+
+		// move the horizon and claim the frame when it is not held
+		synchronized (this) {
+			position = index;
+			notifyAll();
+			while (states[index] == DECODING) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new UncheckedIOException(new IOException("StreamingFrameStore error: interrupted waiting for frame "+index));
+				}
+			}
+			if (states[index] == FAILED) throw new UncheckedIOException(failures[index]);
+			if (states[index] == LOADED) return window.get(index);
+			states[index] = DECODING;
+		}
+
+		// decode frame on the calling thread
+		BufferedImage frame = decode(index);
+		if (frame == null) throw new UncheckedIOException(failures[index]);
+		return frame;
+	}
+
+
+	/**
+	 * Get the number of leading frames held in the window, which can be read without decoding
+	 * @return Number of frames
+	 */
+	@Override
+	public synchronized int getLoaded() {
+		int loaded = 0;
+		while (loaded < length && states[loaded] == LOADED) loaded++;
+		return loaded;
+	}
+
+
+	/**
+	 * Stop decoding and release the decoded frames
+	 */
+	@Override
+	public synchronized void release() {
+		released = true;
+		window.clear();
+		notifyAll();
+	}
+}
@@ -0,0 +1,200 @@
+package motionvdl.model.data;
+
+import java.util.SplittableRandom;
+
+/**
+ * Read only greyscale frame store that renders a seeded stick figure moving across a
+ * noisy background as each frame is read. The figure has a node for each label point
+ * joined by the label connector sequence, and every frame depends only on the seed and
+ * its index, so any length and resolution can be generated in parallel without holding
+ * frames in memory, and any region of a frame can be rendered alone
+ * @author Joseph
+ */
+public class SyntheticFrameStore extends GreyFrameStore {
+
+	// constants
+	private static final int BACKGROUND_NOISE = 16; // range of the per pixel background noise
+	private static final int FIGURE_LEVEL = 224;    // grey level of the figure
+
+	// figure parameters
+	private final long seed;
+	private final int background;  // grey level of the background
+	private final double size;     // figure height in pixels
+	private final double period;   // frames per stride cycle
+	private final double sway;     // frames per crossing of the frame
+	private final double phase;    // stride cycle phase of the first frame
+
+	/**
+	 * Construct synthetic store
+	 * @param width Frame width
+	 * @param height Frame height
+	 * @param length Number of frames
+	 * @param seed Random seed
+	 */
+	public SyntheticFrameStore(int width, int height, int length, long seed) {
+		super(width, height, length);
+		SplittableRandom random = new SplittableRandom(seed);
+		this.seed = seed;
+		this.background = 32 + random.nextInt(64);
+		this.size = Math.min(width, height) * (0.5 + 0.3*random.nextDouble());
+		this.period = 20 + 40*random.nextDouble();
+		this.sway = 200 + 400*random.nextDouble();
+		this.phase = 2*Math.PI*random.nextDouble();
+	}
+
+
+	/**
+	 * Determine the pixel position of every figure node in a frame, in the node order of
+	 * the label with each node joined to the node given by the connector sequence
+	 * @param index Index of the frame
+	 * @return Node x and y coordinates in pixels
+	 */
+	public double[] getNodes(int index) {
+
+		// determine body position and stride angle
+		double stride = 2*Math.PI*index / period + phase;
+		double swing = 0.6*Math.sin(stride);
+		double cx = width/2.0 + (width - size*0.5)/2.0 * Math.sin(2*Math.PI*index / sway + phase);
+		double cy = height/2.0 + 0.02*size*Math.abs(Math.cos(stride));
+		double lean = 0.05*size*Math.sin(2*Math.PI*index / sway);
+
+		// place nodes relative to the collarbone and pelvis
+		double[] nodes = new double[2*LabeledVideo.NODE_COUNT];
+		setNode(nodes, 1, cx+lean, cy-0.25*size);                                     // collarbone
+		setNode(nodes, 0, nodes[2], nodes[3]-0.15*size);                              // head
+		setLimb(nodes, 2, 1, 0.18*size, -0.3 + swing);                                // left elbow
+		setLimb(nodes, 3, 2, 0.16*size, -0.1 + 1.4*swing);                            // left hand
+		setLimb(nodes, 4, 1, 0.18*size, 0.3 - swing);                                 // right elbow
+		setLimb(nodes, 5, 4, 0.16*size, 0.1 - 1.4*swing);                             // right hand
+		setNode(nodes, 6, cx, cy+0.1*size);                                           // pelvis
+		setLimb(nodes, 7, 6, 0.2*size, -swing);                                       // left knee
+		setLimb(nodes, 8, 7, 0.2*size, -swing + 0.4*Math.max(0, Math.cos(stride)));   // left foot
+		setLimb(nodes, 9, 6, 0.2*size, swing);                                        // right knee
+		setLimb(nodes, 10, 9, 0.2*size, swing + 0.4*Math.max(0, -Math.cos(stride)));  // right foot
+		return nodes;
+	}
+
+	// set node position
+	private static void setNode(double[] nodes, int node, double x, double y) {
+		nodes[2*node] = x;
+		nodes[2*node+1] = y;
+	}
+
+	// set node position by limb length and angle from straight down
+	private static void setLimb(double[] nodes, int node, int parent, double limb, double angle) {
+		setNode(nodes, node, nodes[2*parent] + limb*Math.sin(angle), nodes[2*parent+1] + limb*Math.cos(angle));
+	}
+
+
+	/**
+	 * Render frame greyscale bytes in row major order
+	 * @param index Index of the frame
+	 * @param grey Destination array
+	 * @param offset Offset into the destination array
+	 */
+	@Override
+	public void readGrey(int index, byte[] grey, int offset) {
+		render(index, 0, 0, width, height, grey, offset);
+	}
+
+
+	/**
+	 * Render rectangular region of frame as packed rgb pixels with equal color channels
+	 * @param index Index of the frame
+	 * @param x Top left x coordinate of the region
+	 * @param y Top left y coordinate of the region
+	 * @param w Width of the region
+	 * @param h Height of the region
+	 * @param pixels Destination array of at least w*h elements
+	 */
+	@Override
+	public void readRGB(int index, int x, int y, int w, int h, int[] pixels) {
+		byte[] grey = new byte[w*h];
+		render(index, x, y, w, h, grey, 0);
+		for (int p=0; p < w*h; p++) {
+			pixels[p] = (grey[p] & 0xFF) * 0x010101;
+		}
+	}
+
+
+	/**
+	 * Regions are rendered alone
+	 * @return True
+	 */
+	@Override
+	public boolean hasRegionReads() {
+		return true;
+	}
+
+
+	/**
+	 * Render rectangular region of frame greyscale bytes in row major order
+	 */
+	private void render(int index, int x, int y, int w, int h, byte[] grey, int offset) {
+
+		// fill background with noise hashed from the frame and pixel position
+		for (int j=0; j < h; j++) {
+			for (int k=0; k < w; k++) {
+				grey[offset + j*w+k] = (byte) (background + getNoise(index, (long) (y+j)*width + x+k));
+			}
+		}
+
+		// draw each connector then the head
+		double[] nodes = getNodes(index);
+		double thickness = Math.max(1, 0.025*size);
+		for (int node=1; node < LabeledVideo.NODE_COUNT; node++) {
+			int parent = LabeledVideo.CONNECTOR_SEQUENCE[node];
+			drawSegment(grey, offset, x, y, w, h, nodes[2*node], nodes[2*node+1], nodes[2*parent], nodes[2*parent+1], thickness);
+		}
+		drawSegment(grey, offset, x, y, w, h, nodes[0], nodes[1], nodes[0], nodes[1], Math.max(2, 0.07*size));
+	}
+
+
+	/**
+	 * Determine the background noise of a pixel, so any region renders the same pixels as the whole frame
+	 */
+	private int getNoise(int index, long pixel) {
+		long z = seed + 0x9E3779B97F4A7C15L*(index+1) + 0xBF58476D1CE4E5B9L*pixel;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return (int) ((z ^ (z >>> 31)) >>> 60) % BACKGROUND_NOISE;
+	}
+
+
+	/**
+	 * Fill every pixel of a region within a distance of a line segment with the figure level
+	 */
+	private void drawSegment(byte[] grey, int offset, int x, int y, int w, int h, double x0, double y0, double x1, double y1, double radius) {
+
+		// determine bounding box inside the region
+		int left = Math.max(x, (int) Math.floor(Math.min(x0, x1) - radius));
+		int right = Math.min(x+w-1, (int) Math.ceil(Math.max(x0, x1) + radius));
+		int top = Math.max(y, (int) Math.floor(Math.min(y0, y1) - radius));
+		int bottom = Math.min(y+h-1, (int) Math.ceil(Math.max(y0, y1) + radius));
+
+		// fill pixels whose centre is within the radius of the segment
+		double dx = x1-x0;
+		double dy = y1-y0;
+		double span = dx*dx + dy*dy;
+		for (int j=top; j <= bottom; j++) {
+			for (int k=left; k <= right; k++) {
+				double px = k+0.5 - x0;
+				double py = j+0.5 - y0;
+				double t = (span > 0) ? Math.min(Math.max((px*dx + py*dy) / span, 0), 1) : 0;
+				double ex = px - t*dx;
+				double ey = py - t*dy;
+				if (ex*ex + ey*ey <= radius*radius) grey[offset + (j-y)*w + k-x] = (byte) FIGURE_LEVEL;
+			}
+		}
+	}
+
+
+	/**
+	 * Synthetic frames are read only
+	 * @throws UnsupportedOperationException Always
+	 */
+	@Override
+	public void writeGrey(int index, byte[] grey, int offset) throws UnsupportedOperationException {
+		throw new UnsupportedOperationException("SyntheticFrameStore error: store is read only");
+	}
+}
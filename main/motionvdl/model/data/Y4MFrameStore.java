@@ -0,0 +1,233 @@
+package motionvdl.model.data;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import motionvdl.Debug;
+import motionvdl.model.FileSystem;
+
+/**
+ * Read only greyscale frame store backed by an uncompressed YUV4MPEG2 (y4m) video file.
+ * Only the luma plane of each frame is read, straight into greyscale, and frames are
+ * read from the file on access at positions determined by the fixed frame size
+ * @author Joseph
+ */
+public class Y4MFrameStore extends GreyFrameStore {
+
+	// constants
+	private static final String MAGIC = "YUV4MPEG2 ";
+	private static final String FRAME_MAGIC = "FRAME";
+	private static final int HEADER_LIMIT = 4096; // longest stream or frame header read
+
+	// file layout
+	private final FileChannel channel;
+	private final long dataOffset;  // position of the first frame header
+	private final int frameHeader;  // bytes of each frame header including the newline
+	private final long frameSize;   // bytes of each frame including the header
+
+	/**
+	 * Open y4m file and read its stream header, trailing bytes of a partially written frame are ignored
+	 * @param location Filesystem location
+	 * @throws IOException Problem accessing filesystem
+	 * @throws IllegalArgumentException Malformed file or unsupported color space
+	 */
+	public Y4MFrameStore(String location) throws IOException, IllegalArgumentException {
+		this(location, readHeader(location));
+	}
+
+	// construct with the parsed header layout as width, height, data offset, frame header, frame size, length
+	private Y4MFrameStore(String location, long[] layout) throws IOException {
+		super((int) layout[0], (int) layout[1], (int) layout[5]);
+		this.dataOffset = layout[2];
+		this.frameHeader = (int) layout[3];
+		this.frameSize = layout[4];
+		this.channel = FileChannel.open(Path.of(location), StandardOpenOption.READ);
+
+		// debug trace
+		Debug.trace(String.format("Created (%d,%d,%d) y4m frame store of '%s'",length,height,width,location));
+	}
+
+
+	/**
+	 * Parse the stream header and first frame header
+	 * @param location Filesystem location
+	 * @return Layout as width, height, data offset, frame header size, frame size and frame count
+	 * @throws IOException Problem accessing filesystem
+	 * @throws IllegalArgumentException Malformed file or unsupported color space
+	 */
+	private static long[] readHeader(String location) throws IOException, IllegalArgumentException {
+
+		// read stream header line
+		long size = FileSystem.getSize(location);
+		String header = readLine(location, 0, size);
+		if (header == null || !header.startsWith(MAGIC)) throw new IllegalArgumentException("Y4MFrameStore error: not a y4m file");
+
+		// parse stream parameters
+		int width = 0;
+		int height = 0;
+		String colorSpace = "420";
+		for (String parameter : header.substring(MAGIC.length()).trim().split(" +")) {
+			if (parameter.isEmpty()) continue;
+			try {
+				switch (parameter.charAt(0)) {
+					case 'W' -> width = Integer.parseInt(parameter.substring(1));
+					case 'H' -> height = Integer.parseInt(parameter.substring(1));
+					case 'C' -> colorSpace = parameter.substring(1);
+					default -> {} // frame rate, interlacing, aspect ratio and comments do not affect the frame layout
+				}
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException(String.format("Y4MFrameStore error: malformed parameter '%s'",parameter));
+			}
+		}
+		if (width < 1 || height < 1) throw new IllegalArgumentException("Y4MFrameStore error: missing frame size");
+
+		// determine chroma bytes following the luma plane
+		long luma = (long) width*height;
+		long chroma = switch (colorSpace) {
+			case "420", "420jpeg", "420paldv", "420mpeg2" -> 2L * ((width+1)/2) * ((height+1)/2);
+			case "411"      -> 2L * ((width+3)/4) * height;
+			case "422"      -> 2L * ((width+1)/2) * height;
+			case "444"      -> 2L * luma;
+			case "444alpha" -> 3L * luma;
+			case "mono"     -> 0;
+			default -> throw new IllegalArgumentException(String.format("Y4MFrameStore error: unsupported color space '%s'",colorSpace));
+		};
+
+		// determine frame header size from the first frame
+		long dataOffset = header.length() + 1;
+		String frame = readLine(location, dataOffset, size);
+		if (frame == null || !frame.startsWith(FRAME_MAGIC)) throw new IllegalArgumentException("Y4MFrameStore error: no frames");
+		int frameHeader = frame.length() + 1;
+		long frameSize = frameHeader + luma + chroma;
+
+		// determine whole frames
+		long length = (size - dataOffset) / frameSize;
+		if (length < 1 || length > Integer.MAX_VALUE) throw new IllegalArgumentException(String.format("Y4MFrameStore error: invalid frame count '%d'",length));
+		if ((size - dataOffset) % frameSize != 0) Debug.trace(String.format("Y4MFrameStore: ignored %d bytes of a partial frame",(size - dataOffset) % frameSize));
+
+		return new long[] {width, height, dataOffset, frameHeader, frameSize, length};
+	}
+
+
+	/**
+	 * Read a newline terminated ascii line
+	 * @return Line without the newline, null when no newline is found within the header limit
+	 */
+	private static String readLine(String location, long offset, long size) throws IOException {
+		byte[] bytes = FileSystem.readBytes(location, offset, (int) Math.min(HEADER_LIMIT, size - offset));
+		for (int i=0; i < bytes.length; i++) {
+			if (bytes[i] == '\n') return new String(bytes, 0, i, StandardCharsets.US_ASCII);
+		}
+		return null;
+	}
+
+
+	/**
+	 * Read bytes from the file at a position, thread safe as reads do not move the channel position
+	 * @throws UncheckedIOException Problem reading the file or file shorter than expected
+	 */
+	private void read(ByteBuffer buffer, long position) throws UncheckedIOException {
+		try {
+			while (buffer.hasRemaining()) {
+				int count = channel.read(buffer, position);
+				if (count < 0) throw new IOException("Y4MFrameStore error: unexpected end of file");
+				position += count;
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+
+	/**
+	 * Check the frame header of a frame
+	 * @param index Index of the frame
+	 * @return Position of the frame luma plane
+	 * @throws UncheckedIOException Frame header missing
+	 */
+	private long getLumaPosition(int index) throws UncheckedIOException {
+		long position = dataOffset + index*frameSize;
+		byte[] magic = new byte[FRAME_MAGIC.length()];
+		read(ByteBuffer.wrap(magic), position);
+		if (!FRAME_MAGIC.equals(new String(magic, StandardCharsets.US_ASCII))) throw new UncheckedIOException(new IOException(String.format("Y4MFrameStore error: malformed frame %d",index)));
+		return position + frameHeader;
+	}
+
+
+	/**
+	 * Read frame luma plane as greyscale bytes in row major order
+	 * @param index Index of the frame
+	 * @param grey Destination array
+	 * @param offset Offset into the destination array
+	 * @throws UncheckedIOException Problem reading the file
+	 */
+	@Override
+	public void readGrey(int index, byte[] grey, int offset) throws UncheckedIOException {
+		read(ByteBuffer.wrap(grey, offset, width*height), getLumaPosition(index));
+	}
+
+
+	/**
+	 * Read rectangular region of frame as packed rgb pixels with equal color channels,
+	 * reading only the rows of the region
+	 * @param index Index of the frame
+	 * @param x Top left x coordinate of the region
+	 * @param y Top left y coordinate of the region
+	 * @param w Width of the region
+	 * @param h Height of the region
+	 * @param pixels Destination array of at least w*h elements
+	 * @throws UncheckedIOException Problem reading the file
+	 */
+	@Override
+	public void readRGB(int index, int x, int y, int w, int h, int[] pixels) throws UncheckedIOException {
+
+		// read rows of the region
+		byte[] rows = new byte[h*width];
+		read(ByteBuffer.wrap(rows), getLumaPosition(index) + (long) y*width);
+
+		// expand each byte in the region to three channels
+		for (int j=0; j < h; j++) {
+			for (int k=0; k < w; k++) {
+				pixels[j*w+k] = (rows[j*width+x+k] & 0xFF) * 0x010101;
+			}
+		}
+	}
+
+
+	/**
+	 * Regions are read from the frame rows they cover
+	 * @return True
+	 */
+	@Override
+	public boolean hasRegionReads() {
+		return true;
+	}
+
+
+	/**
+	 * Y4M frames are read only
+	 * @throws UnsupportedOperationException Always
+	 */
+	@Override
+	public void writeGrey(int index, byte[] grey, int offset) throws UnsupportedOperationException {
+		throw new UnsupportedOperationException("Y4MFrameStore error: store is read only");
+	}
+
+
+	/**
+	 * Close the file
+	 */
+	@Override
+	public void release() {
+		try {
+			channel.close();
+		} catch (IOException e) {
+			Debug.trace("Y4MFrameStore: problem closing file: "+e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,181 @@
+package motionvdl.model.data;
+
+import java.io.File;
+
+import motionvdl.model.FileSystem;
+
+/**
+ * Runnable check that the fused processing paths are pixel identical to the getCropped,
+ * getScaled, getGreyscaled chain on fixed inputs, and that the tiled, pipeline and region
+ * decode paths and streamed image files are identical to the fused path, while subsampled decoding stays within its
+ * stated tolerance and synthetic ground truth labels follow the frames through processing. Exits with status 1 when any check fails
+ * <p>
+ * Run from the repository root with the compiled classes on the class path:
+ * java -cp &lt;classes&gt; motionvdl.model.data.ProcessedCheck [image directory]
+ * @author Joseph
+ */
+public class ProcessedCheck {
+
+	// constants
+	private static final int SUBSAMPLED_TOLERANCE = 12; // grey levels subsampled decoding may differ from the full decode
+
+	// variables
+	private static int failures = 0;
+
+	/**
+	 * Run every check
+	 * @param args [0] - Image directory to check against, default data/frames
+	 */
+	public static void main(String[] args) throws Exception {
+
+		// fixed inputs
+		Video noise = Video.noise(173, 97, 6, 7);
+		Video synthetic = LabeledVideo.synthetic(320, 240, 6, 11).video;
+
+		// check each filter over several crops and targets
+		for (Resampler.Filter filter : Resampler.Filter.values()) {
+			checkChain("noise", noise, 10, 5, 90, 90, 32, 32, filter);
+			checkChain("noise", noise, 0, 0, 173, 97, 50, 29, filter);
+			checkChain("noise", noise, 3, 1, 64, 64, 64, 64, filter);
+			checkChain("synthetic", synthetic, 40, 0, 240, 240, 64, 64, filter);
+			checkChain("synthetic", synthetic, 0, 0, 320, 240, 17, 13, filter);
+			checkTiled("synthetic", synthetic, 0, 0, 320, 240, 100, 75, filter);
+			checkPipeline("noise", noise, 10, 5, 90, 90, 32, 32, filter);
+		}
+
+		// check ground truth labels are mapped with the frames
+		checkLabels(320, 240, 6, 11, 80, 0, 240, 64);
+		checkLabels(320, 240, 6, 11, 200, 40, 120, 32);
+
+		// check image files when present
+		String location = (args.length > 0) ? args[0] : "data/frames";
+		if (new File(location).isDirectory()) {
+			File[] files = FileSystem.listImages(location);
+			Video images = new Video(new LazyFrameStore(files, 1L << 26));
+			checkChain("images", images, 150, 0, 406, 406, 128, 128, Resampler.Filter.AREA);
+			checkChain("images", images, 100, 50, 300, 300, 64, 64, Resampler.Filter.BILINEAR);
+			checkDecoded("images", images, 100, 50, 300, 300, 64, 64, Resampler.Filter.AREA);
+			checkSubsampled("images", images, 316, 0, 406, 50);
+			checkSubsampled("images", images, 0, 0, 400, 8);
+			for (Resampler.Filter filter : Resampler.Filter.values()) {
+				checkStreaming("images", images, files, 150, 0, 406, 406, 128, 128, filter);
+			}
+		} else {
+			System.out.println("skipped image checks, no directory '"+location+"'");
+		}
+
+		// report
+		System.out.println((failures == 0) ? "all checks passed" : failures+" checks failed");
+		System.exit((failures == 0) ? 0 : 1);
+	}
+
+
+	/**
+	 * Check the fused path against the transform chain
+	 */
+	private static void checkChain(String name, Video video, int x, int y, int w, int h, int tw, int th, Resampler.Filter filter) {
+		byte[] fused = video.getProcessed(x, y, w, h, tw, th, filter).getEncoding();
+		byte[] chain = video.getCropped(x, y, w, h).getScaled(tw, th, filter).getGreyscaled().getEncoding();
+		report(String.format("%s chain %s %dx%d->%dx%d",name,filter,w,h,tw,th), fused, chain, 0);
+	}
+
+
+	/**
+	 * Check tiled resampling against whole frame resampling
+	 */
+	private static void checkTiled(String name, Video video, int x, int y, int w, int h, int tw, int th, Resampler.Filter filter) {
+		int tileSize = Video.getTileSize();
+		try {
+			Video.setTileSize(0);
+			byte[] whole = video.getProcessed(x, y, w, h, tw, th, filter).getEncoding();
+			Video.setTileSize(64);
+			byte[] tiled = video.getProcessed(x, y, w, h, tw, th, filter).getEncoding();
+			report(String.format("%s tiled %s %dx%d->%dx%d",name,filter,w,h,tw,th), tiled, whole, 0);
+		} finally {
+			Video.setTileSize(tileSize);
+		}
+	}
+
+
+	/**
+	 * Check the equivalent pipeline against the fused path
+	 */
+	private static void checkPipeline(String name, Video video, int x, int y, int w, int h, int tw, int th, Resampler.Filter filter) {
+		byte[] fused = video.getProcessed(x, y, w, h, tw, th, filter).getEncoding();
+		byte[] piped = video.getProcessed(new Pipeline().crop(x, y, w, h).scale(tw, th, filter).greyscale(Greyscale.Formula.MEAN)).getEncoding();
+		report(String.format("%s pipeline %s %dx%d->%dx%d",name,filter,w,h,tw,th), piped, fused, 0);
+	}
+
+
+	/**
+	 * Check region decoding of image files without subsampling against the fused path
+	 */
+	private static void checkDecoded(String name, Video video, int x, int y, int w, int h, int tw, int th, Resampler.Filter filter) throws Exception {
+		byte[] fused = video.getProcessed(x, y, w, h, tw, th, filter).getEncoding();
+		byte[] decoded = video.getDecoded(x, y, w, h, 1).getProcessed(0, 0, w, h, tw, th, filter).getEncoding();
+		report(String.format("%s region decode %s %dx%d->%dx%d",name,filter,w,h,tw,th), decoded, fused, 0);
+	}
+
+
+	/**
+	 * Check processing of streamed image files against the same files decoded lazily, with a
+	 * window of a few frames so frames are evicted and decoded again
+	 */
+	private static void checkStreaming(String name, Video lazy, File[] files, int x, int y, int w, int h, int tw, int th, Resampler.Filter filter) throws Exception {
+		Video streamed = new Video(new StreamingFrameStore(files, 4L*4*lazy.width*lazy.height));
+		try {
+			byte[] fused = lazy.getProcessed(x, y, w, h, tw, th, filter).getEncoding();
+			byte[] streaming = streamed.getProcessed(x, y, w, h, tw, th, filter).getEncoding();
+			report(String.format("%s streaming %s %dx%d->%dx%d",name,filter,w,h,tw,th), streaming, fused, 0);
+		} finally {
+			streamed.release();
+		}
+	}
+
+
+	/**
+	 * Check subsampled region decoding of image files against the fused path within the stated tolerance
+	 */
+	private static void checkSubsampled(String name, Video video, int x, int y, int crop, int target) throws Exception {
+		int step = Video.getDecodeStep(crop, target);
+		byte[] fused = video.getProcessed(x, y, crop, crop, target, target, Resampler.Filter.AREA).getEncoding();
+		Video decoded = video.getDecoded(x, y, crop, crop, step);
+		byte[] subsampled = decoded.getProcessed(0, 0, decoded.width, decoded.height, target, target, Resampler.Filter.AREA).getEncoding();
+		report(String.format("%s subsampled decode step %d %dx%d->%dx%d",name,step,crop,crop,target,target), subsampled, fused, SUBSAMPLED_TOLERANCE);
+	}
+
+
+	/**
+	 * Check the label of trimmed and processed synthetic video against the figure node positions
+	 * mapped into the crop region, each stack cut at its first node outside the region
+	 */
+	private static void checkLabels(int width, int height, int length, long seed, int x, int y, int crop, int target) {
+		LabeledVideo processed = LabeledVideo.synthetic(width, height, length, seed).getTrimmed(1, length, 2).getProcessed(x, y, crop, target);
+		SyntheticFrameStore figure = new SyntheticFrameStore(width, height, length, seed);
+		Label expected = new Label(processed.label.length, LabeledVideo.NODE_COUNT);
+		for (int i=0; i < expected.length; i++) {
+			double[] nodes = figure.getNodes(1+2*i);
+			for (int node=0; node < LabeledVideo.NODE_COUNT; node++) {
+				double px = (Math.min(Math.max(nodes[2*node], 0), width) - x) / crop;
+				double py = (Math.min(Math.max(nodes[2*node+1], 0), height) - y) / crop;
+				if (px < 0 || px > 1 || py < 0 || py > 1) break;
+				expected.push(i, px, py);
+			}
+		}
+		report(String.format("synthetic labels %d,%d,%d->%dx%d",x,y,crop,target,target), processed.label.getEncoding(), expected.getEncoding(), 0);
+	}
+
+
+	/**
+	 * Compare encodings and record a failure when they differ by more than the tolerance
+	 */
+	private static void report(String check, byte[] actual, byte[] expected, int tolerance) {
+		int difference = (actual.length == expected.length) ? 0 : Integer.MAX_VALUE;
+		for (int i=0; difference != Integer.MAX_VALUE && i < actual.length; i++) {
+			difference = Math.max(difference, Math.abs((actual[i] & 0xFF) - (expected[i] & 0xFF)));
+		}
+		boolean passed = difference <= tolerance;
+		if (!passed) failures++;
+		System.out.println(String.format("%s %s (max difference %s)",passed ? "pass" : "FAIL",check,difference == Integer.MAX_VALUE ? "length" : difference));
+	}
+}